@@ -0,0 +1,2 @@
+# Classes, constructors and fields accessed by name from native code.
+-keep class com.garmin.marine.activecaptaincommunitysdk.DTO.** { *; }
@@ -15,8 +15,19 @@ limitations under the License.
 ------------------------------------------------------------------------------*/
 
 #include <jni.h>
+#include <algorithm>
+#include <chrono>
+#include <cstdio>
+#include <condition_variable>
 #include <memory>
+#include <mutex>
+#include <shared_mutex>
 #include <string>
+#include <vector>
+#include <dirent.h>
+#include <unistd.h>
+#include <sys/stat.h>
+#include <sys/statvfs.h>
 #include "Acdb/AcdbUrlAction.hpp"
 #include "Acdb/DataService.hpp"
 #include "Acdb/Repository.hpp"
@@ -26,324 +37,1326 @@ limitations under the License.
 #include "Acdb/Version.hpp"
 #include "NavDateTimeExtensions.hpp"
 #include "UTL_pub_lib_cnvt.h"
+#include "sqlite3.h"
+#include "zlib.h"
 
 using DataServicePtr = std::shared_ptr<Acdb::IDataService>;
 using UpdateServicePtr = std::shared_ptr<Acdb::IUpdateService>;
+using ReadLock = std::shared_lock<std::shared_timed_mutex>;
+using WriteLock = std::unique_lock<std::shared_timed_mutex>;
 
-int getEnumValue(JNIEnv* env, const char* typeName, jobject enumValue) {
-    jmethodID ordinalMethod = env->GetMethodID(env->FindClass(typeName), "ordinal", "()I");
-    return env->CallIntMethod(enumValue, ordinalMethod);
+struct JniCache
+{
+    jmethodID enumOrdinalMethodId;
+
+    jclass acdbUrlActionClass;
+    jmethodID acdbUrlActionInitMethodId;
+    jmethodID acdbUrlActionBytesInitMethodId;
+
+    jclass stringClass;
+    jmethodID stringBytesInitMethodId;
+    jstring utf8CharsetName;
+
+    jclass hashMapClass;
+    jmethodID hashMapInitMethodId;
+    jmethodID hashMapPutMethodId;
+
+    jclass lastUpdateInfoTypeClass;
+    jmethodID lastUpdateInfoTypeInitMethodId;
+
+    jclass searchMarkerClass;
+    jmethodID searchMarkerInitMethodId;
+
+    jfieldID searchResultBufferCountFieldId;
+    jfieldID searchResultBufferMarkerIdsFieldId;
+    jfieldID searchResultBufferLatitudesFieldId;
+    jfieldID searchResultBufferLongitudesFieldId;
+    jfieldID searchResultBufferMarkerTypesFieldId;
+    jfieldID searchResultBufferMapIconsFieldId;
+    jfieldID searchResultBufferNameOffsetsFieldId;
+    jfieldID searchResultBufferNamesFieldId;
+
+    jclass syncPageResultClass;
+    jmethodID syncPageResultInitMethodId;
+
+    jclass tileLastModifiedListClass;
+    jmethodID tileLastModifiedListInitMethodId;
+
+    jclass tileInstallStatsClass;
+    jmethodID tileInstallStatsInitMethodId;
+
+    jclass tileXYClass;
+    jmethodID tileXYInitMethodId;
+
+    jobject unknownActionType;
+    std::map<Acdb::AcdbUrlAction::ActionType, jobject> actionTypes;
+    std::map<ACDB_type_type, jobject> markerTypes;
+    std::map<Acdb::MapIconType, jobject> mapIconTypes;
+    std::map<ACDB_type_type, jbyte> markerTypeOrdinals;
+    std::map<Acdb::MapIconType, jbyte> mapIconTypeOrdinals;
+};
+
+// Populated once in JNI_OnLoad, released in JNI_OnUnload.  Classes and enum values are held as
+// global references so they stay valid across calls and threads.
+static JniCache jniCache;
+
+jclass findGlobalClass(JNIEnv* env, const char* typeName) {
+    jclass localClazz = env->FindClass(typeName);
+
+    if (!localClazz)
+    {
+        return nullptr;
+    }
+
+    jclass globalClazz = (jclass)env->NewGlobalRef(localClazz);
+    env->DeleteLocalRef(localClazz);
+
+    return globalClazz;
 }
 
-jobject getJEnumValue(JNIEnv* env, std::string typeName, const char* value) {
-    jclass clazz = env->FindClass(typeName.c_str());
+jobject getGlobalEnumValue(JNIEnv* env, const char* typeName, const char* value) {
+    jclass clazz = env->FindClass(typeName);
     jfieldID fieldId = env->GetStaticFieldID(clazz, value, (std::string{"L"} + typeName + ";").c_str());
     jobject jValue = env->GetStaticObjectField(clazz, fieldId);
 
-    return jValue;
-}
+    jobject globalValue = env->NewGlobalRef(jValue);
+    env->DeleteLocalRef(jValue);
+    env->DeleteLocalRef(clazz);
+
+    return globalValue;
+}
+
+int getEnumValue(JNIEnv* env, jobject enumValue) {
+    return env->CallIntMethod(enumValue, jniCache.enumOrdinalMethodId);
+}
+
+std::string getString(JNIEnv* env, jobject obj, jstring jstr) {
+    if (jstr != nullptr) {
+        const char* chars = env->GetStringUTFChars(jstr, nullptr);
+        std::string result{chars};
+        env->ReleaseStringUTFChars(jstr, chars);
+
+        return result;
+    } else {
+        return std::string{};
+    }
+}
+
+std::string getString(JNIEnv* env, jbyteArray bytes, jint offset, jint length) {
+    std::string result(length, '\0');
+    env->GetByteArrayRegion(bytes, offset, length, reinterpret_cast<jbyte*>(&result[0]));
+
+    return result;
+}
+
+std::string getDirectBufferString(JNIEnv* env, jobject buffer, jint offset, jint length) {
+    const char* address = static_cast<const char*>(env->GetDirectBufferAddress(buffer));
+
+    if (address == nullptr) {
+        return std::string{};
+    }
+
+    return std::string{address + offset, (std::size_t)length};
+}
+
+jbyteArray newByteArray(JNIEnv* env, const std::string& str) {
+    jbyteArray result = env->NewByteArray((jsize)str.size());
+
+    if (result) {
+        env->SetByteArrayRegion(result, 0, (jsize)str.size(), reinterpret_cast<const jbyte*>(str.data()));
+    }
+
+    return result;
+}
+
+// Unlike NewStringUTF, which expects modified UTF-8, this decodes standard UTF-8 so 4-byte
+// characters survive the conversion.
+jstring newStringUtf8(JNIEnv* env, const std::string& str) {
+    jbyteArray bytes = newByteArray(env, str);
+
+    if (!bytes) {
+        return nullptr;
+    }
+
+    jstring result = (jstring)env->NewObject(jniCache.stringClass, jniCache.stringBytesInitMethodId, bytes, jniCache.utf8CharsetName);
+    env->DeleteLocalRef(bytes);
+
+    return result;
+}
+
+struct Connection
+{
+    Acdb::RepositoryPtr repository;
+    DataServicePtr dataService;
+};
+
+// Writes go through the writer connection and are serialized by writeMutex.  Searches and renders
+// borrow one of the read connections and hold mutex shared, so they run concurrently with each
+// other and, with the database in WAL mode, with writes.  Changing rendering state or reopening
+// read connections holds mutex exclusively.
+//
+// Without read connections, reads and writes share the writer connection's DataService, which is
+// not thread safe, so both hold mutex exclusively.
+struct SmartPointerHolder
+{
+    std::string databasePath;
+    std::string languageCode;
+    Connection writer;
+    UpdateServicePtr updateService;
+    std::vector<Connection> readers;
+    std::vector<Connection*> idleReaders;
+    std::mutex readerPoolMutex;
+    std::condition_variable readerReleased;
+    std::shared_timed_mutex mutex;
+    std::mutex writeMutex;
+
+    // The writer's SQLite connection, identified by openWriter, so a deferred sync window can
+    // change its per-connection pragmas.  Null if it could not be identified.
+    sqlite3* writerDb = nullptr;
+    bool syncDeferred = false;
+    std::string savedSynchronous;
+    std::string savedJournalMode;
+};
+
+class ReadLease
+{
+public:
+    explicit ReadLease(SmartPointerHolder* holder)
+        : mHolder{holder}, mLock{holder->mutex, std::defer_lock}, mExclusiveLock{holder->mutex, std::defer_lock}, mConnection{&holder->writer} {
+        if (holder->readers.empty()) {
+            mExclusiveLock.lock();
+        } else {
+            mLock.lock();
+
+            std::unique_lock<std::mutex> poolLock{holder->readerPoolMutex};
+            holder->readerReleased.wait(poolLock, [holder] { return !holder->idleReaders.empty(); });
+
+            mConnection = holder->idleReaders.back();
+            holder->idleReaders.pop_back();
+        }
+    }
+
+    ~ReadLease() {
+        if (mConnection != &mHolder->writer) {
+            {
+                std::lock_guard<std::mutex> poolLock{mHolder->readerPoolMutex};
+                mHolder->idleReaders.push_back(mConnection);
+            }
+
+            mHolder->readerReleased.notify_one();
+        }
+    }
+
+    ReadLease(const ReadLease&) = delete;
+    ReadLease& operator=(const ReadLease&) = delete;
+
+    const Connection* operator->() const {
+        return mConnection;
+    }
+
+private:
+    SmartPointerHolder* mHolder;
+    ReadLock mLock;
+    WriteLock mExclusiveLock;
+    Connection* mConnection;
+};
+
+class WriteLease
+{
+public:
+    explicit WriteLease(SmartPointerHolder* holder)
+        : mWriteLock{holder->writeMutex}, mLock{holder->mutex, std::defer_lock} {
+        if (holder->readers.empty()) {
+            mLock.lock();
+        }
+    }
+
+    WriteLease(const WriteLease&) = delete;
+    WriteLease& operator=(const WriteLease&) = delete;
+
+private:
+    std::unique_lock<std::mutex> mWriteLock;
+    WriteLock mLock;
+};
+
+template <typename Function>
+void forEachDataService(SmartPointerHolder* holder, Function function) {
+    if (holder->writer.dataService) {
+        function(*holder->writer.dataService);
+    }
+
+    for (Connection& reader : holder->readers) {
+        function(*reader.dataService);
+    }
+}
+
+// Returns the value of a pragma on the given connection, or an empty string if it cannot be read.
+std::string getPragma(sqlite3* db, const std::string& name) {
+    std::string value;
+    sqlite3_stmt* statement = nullptr;
+
+    if (sqlite3_prepare_v2(db, ("PRAGMA " + name + ";").c_str(), -1, &statement, nullptr) == SQLITE_OK && sqlite3_step(statement) == SQLITE_ROW) {
+        const unsigned char* text = sqlite3_column_text(statement, 0);
+        if (text != nullptr) {
+            value = reinterpret_cast<const char*>(text);
+        }
+    }
+
+    sqlite3_finalize(statement);
+
+    return value;
+}
+
+void setPragma(sqlite3* db, const std::string& name, const std::string& value) {
+    sqlite3_exec(db, ("PRAGMA " + name + "=" + value + ";").c_str(), nullptr, nullptr, nullptr);
+}
+
+// Relaxes syncing on the writer connection while a deferred sync window is open.  Called when the
+// window opens and whenever the writer connection is reopened during it, since a new connection
+// starts with default settings.  Without read connections, the caller must hold mutex exclusively.
+void applyDeferredSync(SmartPointerHolder* holder) {
+    if (!holder->syncDeferred || holder->writerDb == nullptr) {
+        return;
+    }
+
+    if (holder->savedSynchronous.empty()) {
+        holder->savedSynchronous = getPragma(holder->writerDb, "synchronous");
+    }
+
+    // Databases with read connections are always in WAL mode.
+    if (holder->readers.empty()) {
+        if (holder->savedJournalMode.empty()) {
+            holder->savedJournalMode = getPragma(holder->writerDb, "journal_mode");
+        }
+
+        setPragma(holder->writerDb, "journal_mode", "WAL");
+    }
+
+    // In WAL mode, NORMAL syncs only at checkpoints, which is safe against corruption but may
+    // lose the latest commits on power failure.
+    setPragma(holder->writerDb, "synchronous", "NORMAL");
+}
+
+// Returns true if a connection has the database at path open, comparing the files themselves so
+// different spellings of the same path match.  The file may not exist yet for a new database.
+bool isConnectionTo(sqlite3* db, const std::string& path) {
+    const char* filename = sqlite3_db_filename(db, "main");
+    if (filename == nullptr) {
+        return false;
+    }
+
+    struct stat connectionStat;
+    struct stat pathStat;
+    if (stat(filename, &connectionStat) == 0 && stat(path.c_str(), &pathStat) == 0) {
+        return connectionStat.st_dev == pathStat.st_dev && connectionStat.st_ino == pathStat.st_ino;
+    }
+
+    return path == filename;
+}
+
+struct OpenedConnections
+{
+    const std::string* databasePath;
+    std::vector<sqlite3*> connections;
+};
+
+// Set by openConnection while acdb opens a connection.  Auto extensions run on the thread
+// that opens the connection, once the database file is attached and before sqlite3_open_v2
+// returns, so the connection's file name is known.
+thread_local OpenedConnections* openedConnections = nullptr;
+
+int recordConnection(sqlite3* db, char** errorMessage, const sqlite3_api_routines* api) {
+    if (openedConnections != nullptr && isConnectionTo(db, *openedConnections->databasePath)) {
+        openedConnections->connections.push_back(db);
+    }
+
+    return SQLITE_OK;
+}
+
+// acdb does not expose its connections.  While function opens a repository, the recordConnection
+// auto extension records the connections to the database at path opened on this thread.  Returns
+// the connection only if exactly one was opened, so a change in how acdb opens connections turns
+// off what depends on it instead of using the wrong connection.
+template <typename Function>
+sqlite3* openConnection(const std::string& path, Function function) {
+    OpenedConnections opened{&path, {}};
+    openedConnections = &opened;
+
+    try {
+        function();
+    } catch (...) {
+        openedConnections = nullptr;
+        throw;
+    }
+
+    openedConnections = nullptr;
+
+    return (opened.connections.size() == 1) ? opened.connections.front() : nullptr;
+}
+
+// Opens the writer repository with function, identifying its connection, and reapplies an open
+// deferred sync window to the new connection.
+template <typename Function>
+void openWriter(SmartPointerHolder* holder, Function function) {
+    holder->writerDb = nullptr;
+    holder->writerDb = openConnection(holder->databasePath, function);
+    applyDeferredSync(holder);
+}
+
+// Journal mode is stored in the database file, so this only needs to run when the file is
+// created or replaced.  Does nothing if the file does not exist yet.
+void enableWriteAheadLog(const std::string& databasePath) {
+    sqlite3* db = nullptr;
+
+    if (sqlite3_open_v2(databasePath.c_str(), &db, SQLITE_OPEN_READWRITE, nullptr) == SQLITE_OK) {
+        sqlite3_exec(db, "PRAGMA journal_mode=WAL;", nullptr, nullptr, nullptr);
+    }
+
+    sqlite3_close(db);
+}
+
+// Syncs the log and copies it into the database file, so everything committed so far is durable,
+// then truncates the log so it does not keep the space used by a large update.  Returns true if
+// the log is now empty, or the database does not exist or does not use a write-ahead log.
+bool checkpointWriteAheadLog(const std::string& databasePath) {
+    struct stat fileStat;
+    if (stat(databasePath.c_str(), &fileStat) != 0) {
+        return true;
+    }
+
+    sqlite3* db = nullptr;
+    bool empty = false;
+
+    if (sqlite3_open_v2(databasePath.c_str(), &db, SQLITE_OPEN_READWRITE, nullptr) == SQLITE_OK) {
+        sqlite3_busy_timeout(db, 5000);
+
+        // A new connection does not know the database uses a log, and does not checkpoint it,
+        // until it has read the database.
+        getPragma(db, "schema_version");
+
+        // A truncating checkpoint only succeeds once every frame is copied, and leaves both
+        // counts 0, or -1 if the database is not in WAL mode.
+        int logFrames = -1;
+        int checkpointedFrames = -1;
+        empty = (sqlite3_wal_checkpoint_v2(db, nullptr, SQLITE_CHECKPOINT_TRUNCATE, &logFrames, &checkpointedFrames) == SQLITE_OK) &&
+                logFrames <= 0 && checkpointedFrames <= 0;
+    }
+
+    sqlite3_close(db);
+
+    return empty;
+}
+
+// Must be called with mutex held exclusively.  Translations are loaded by SetLanguage, so this
+// picks up translations added by an install.
+void reloadLanguage(SmartPointerHolder* holder) {
+    forEachDataService(holder, [holder](Acdb::IDataService& dataService) {
+        dataService.SetLanguage(holder->languageCode);
+    });
+}
+
+// Must be called with mutex held exclusively, so no read connection is borrowed.
+void reopenReadConnections(SmartPointerHolder* holder) {
+    for (Connection& reader : holder->readers) {
+        reader.repository->Close();
+    }
+
+    enableWriteAheadLog(holder->databasePath);
+
+    for (Connection& reader : holder->readers) {
+        reader.repository->Open();
+    }
+}
+
+// Creates an empty file next to the database for an inflated tile, with a name no other install
+// is using, and returns its path.  Returns an empty string if the file could not be created.
+std::string createScratchFile(const std::string& databasePath) {
+    std::string pathStr = databasePath + ".install_XXXXXX";
+
+    int fd = mkstemp(&pathStr[0]);
+    if (fd < 0) {
+        return std::string{};
+    }
+
+    close(fd);
+
+    return pathStr;
+}
+
+// Removes scratch files left behind if the process died during an install.
+void removeScratchFiles(const std::string& databasePath) {
+    std::string::size_type separator = databasePath.find_last_of('/');
+    std::string directoryStr = (separator == std::string::npos) ? "./" : databasePath.substr(0, separator + 1);
+    std::string prefixStr = databasePath.substr(separator == std::string::npos ? 0 : separator + 1) + ".install_";
+
+    DIR* directory = opendir(directoryStr.c_str());
+    if (directory == nullptr) {
+        return;
+    }
+
+    struct dirent* entry;
+    while ((entry = readdir(directory)) != nullptr) {
+        std::string nameStr = entry->d_name;
+        if (nameStr.compare(0, prefixStr.size(), prefixStr) == 0) {
+            std::remove((directoryStr + nameStr).c_str());
+        }
+    }
+
+    closedir(directory);
+}
+
+// Inflates a gzip file into a new file.  Returns false if either file cannot be opened, the
+// compressed data is corrupt or the output cannot be written.
+bool inflateFile(const std::string& gzipPath, const std::string& outputPath) {
+    const unsigned bufferSize = 64 * 1024;
+
+    gzFile input = gzopen(gzipPath.c_str(), "rb");
+    if (input == nullptr) {
+        return false;
+    }
+
+    FILE* output = std::fopen(outputPath.c_str(), "wb");
+    if (output == nullptr) {
+        gzclose(input);
+        return false;
+    }
+
+    gzbuffer(input, bufferSize);
+
+    std::vector<char> buffer(bufferSize);
+    bool success = true;
+    int count;
+
+    while ((count = gzread(input, buffer.data(), bufferSize)) > 0) {
+        if (std::fwrite(buffer.data(), 1, count, output) != (std::size_t)count) {
+            success = false;
+            break;
+        }
+    }
+
+    if (count < 0) {
+        success = false;
+    }
+
+    success = (std::fclose(output) == 0) && success;
+    gzclose(input);
+
+    return success;
+}
+
+jlong elapsedMillis(std::chrono::steady_clock::time_point start) {
+    return (jlong)std::chrono::duration_cast<std::chrono::milliseconds>(std::chrono::steady_clock::now() - start).count();
+}
+
+struct TileMerge
+{
+    bool installed;
+    jlong installMillis;
+    jlong rowsChanged;
+};
+
+// Merges a tile database into repository, timing only the merge itself.  Rows changed are counted
+// on db, the repository's connection, and are -1 if it is not known.
+TileMerge mergeTile(Acdb::Repository& repository, sqlite3* db, const std::string& path, jint tileX, jint tileY) {
+    Acdb::TileXY tileXY{tileX, tileY};
+    int changesBefore = (db != nullptr) ? sqlite3_total_changes(db) : 0;
+
+    auto installStart = std::chrono::steady_clock::now();
+    bool installed = repository.InstallSingleTileDatabase(path, tileXY);
+    jlong installMillis = elapsedMillis(installStart);
+
+    jlong rowsChanged = (db != nullptr) ? (jlong)(sqlite3_total_changes(db) - changesBefore) : -1;
+
+    return TileMerge{installed, installMillis, rowsChanged};
+}
+
+// Installs a tile database file by calling install, which returns a TileMerge, and returns a
+// TileInstallStats describing it, or null if the install failed.  inflateMillis is the time
+// already spent producing the file, if it was compressed.
+template <typename Install>
+jobject installTileDatabase(JNIEnv* env, jint tileX, jint tileY, jlong inflateMillis, Install install) {
+    TileMerge merge = install();
+
+    if (!merge.installed) {
+        return nullptr;
+    }
+
+    return env->NewObject(jniCache.tileInstallStatsClass, jniCache.tileInstallStatsInitMethodId, tileX, tileY, merge.rowsChanged, inflateMillis, merge.installMillis);
+}
+
+// Installs a tile database file into the live database, through the writer connection.
+jobject installTileDatabase(JNIEnv* env, SmartPointerHolder* holder, const std::string& path, jint tileX, jint tileY, jlong inflateMillis) {
+    return installTileDatabase(env, tileX, tileY, inflateMillis, [holder, &path, tileX, tileY] {
+        WriteLease lease{holder};
+
+        TileMerge merge = mergeTile(*holder->writer.repository, holder->writerDb, path, tileX, tileY);
+
+        // Without read connections, the write lease already holds mutex exclusively.
+        WriteLock lock{holder->mutex, std::defer_lock};
+
+        // Installing into an empty database creates the file, and read connections opened before
+        // then do not see it.
+        if (!holder->readers.empty()) {
+            lock.lock();
+            reopenReadConnections(holder);
+        }
+
+        reloadLanguage(holder);
+
+        return merge;
+    });
+}
+
+// Inflates a gzip-compressed tile database and installs it into the live database.  acdb attaches
+// the tile by path, so it is inflated into a scratch file next to the database.  Inflating happens
+// before taking the write lease, so it does not hold up other writes.
+jobject installCompressedTileDatabase(JNIEnv* env, SmartPointerHolder* holder, const std::string& gzipPath, jint tileX, jint tileY) {
+    std::string scratchPathStr = createScratchFile(holder->databasePath);
+    if (scratchPathStr.empty()) {
+        return nullptr;
+    }
+
+    auto inflateStart = std::chrono::steady_clock::now();
+    jobject stats = nullptr;
+
+    if (inflateFile(gzipPath, scratchPathStr)) {
+        stats = installTileDatabase(env, holder, scratchPathStr, tileX, tileY, elapsedMillis(inflateStart));
+    }
+
+    std::remove(scratchPathStr.c_str());
+
+    return stats;
+}
+
+// Returns false if the file system holding the database does not have room for a copy of it plus
+// the tile files, a lower bound on what installing them into a copy needs.  Returns true if the
+// space cannot be determined, the copy then fails cleanly if it runs out.
+bool hasSpaceForCopy(const std::string& databasePath, const std::vector<std::string>& tilePaths) {
+    struct stat fileStat;
+    if (stat(databasePath.c_str(), &fileStat) != 0) {
+        return true;
+    }
+
+    uint64_t required = (uint64_t)fileStat.st_size;
+
+    if (stat((databasePath + "-wal").c_str(), &fileStat) == 0) {
+        required += (uint64_t)fileStat.st_size;
+    }
+
+    for (const std::string& tilePath : tilePaths) {
+        if (stat(tilePath.c_str(), &fileStat) == 0) {
+            required += (uint64_t)fileStat.st_size;
+        }
+    }
+
+    struct statvfs fileSystemStat;
+    if (statvfs(databasePath.c_str(), &fileSystemStat) != 0) {
+        return true;
+    }
+
+    return (uint64_t)fileSystemStat.f_bavail * fileSystemStat.f_frsize > required;
+}
+
+void removeDatabaseFiles(const std::string& databasePath) {
+    std::remove(databasePath.c_str());
+    std::remove((databasePath + "-journal").c_str());
+    std::remove((databasePath + "-wal").c_str());
+    std::remove((databasePath + "-shm").c_str());
+}
+
+// Copies a database, including changes still in its write-ahead log, into a new file.  Returns
+// true without creating the copy if the source does not exist yet.
+bool copyDatabase(const std::string& sourcePath, const std::string& destinationPath) {
+    FILE* sourceFile = std::fopen(sourcePath.c_str(), "rb");
+    if (sourceFile == nullptr) {
+        return true;
+    }
+
+    std::fclose(sourceFile);
+
+    sqlite3* source = nullptr;
+    sqlite3* destination = nullptr;
+    bool success = false;
+
+    if (sqlite3_open_v2(sourcePath.c_str(), &source, SQLITE_OPEN_READONLY, nullptr) == SQLITE_OK &&
+        sqlite3_open_v2(destinationPath.c_str(), &destination, SQLITE_OPEN_READWRITE | SQLITE_OPEN_CREATE, nullptr) == SQLITE_OK) {
+        sqlite3_busy_timeout(source, 5000);
+
+        sqlite3_backup* backup = sqlite3_backup_init(destination, "main", source, "main");
+        if (backup != nullptr) {
+            success = (sqlite3_backup_step(backup, -1) == SQLITE_DONE);
+            success = (sqlite3_backup_finish(backup) == SQLITE_OK) && success;
+        }
+    }
+
+    sqlite3_close(destination);
+    sqlite3_close(source);
+
+    return success;
+}
+
+// Longitudes of +/-180 degrees do not fit in semicircles, so they are clamped to the edges of the
+// int32_t range.
+bbox_type getBbox(jdouble south, jdouble west, jdouble north, jdouble east) {
+    bbox_type bbox;
+    bbox.nec.lat = (int32_t)(north * UTL_DEG_TO_SEMI);
+    bbox.nec.lon = (east == -180.0 || east == 180.0) ? INT32_MAX : (int32_t)(east * UTL_DEG_TO_SEMI);
+    bbox.swc.lat = (int32_t)(south * UTL_DEG_TO_SEMI);
+    bbox.swc.lon = (west == -180.0 || west == 180.0) ? INT32_MIN : (int32_t)(west * UTL_DEG_TO_SEMI);
+
+    return bbox;
+}
+
+// Formats a last update time as expected by the sync API, or returns null if there is none.
+jstring newLastUpdateString(JNIEnv* env, uint64_t lastUpdate) {
+    if (lastUpdate == 0) {
+        return nullptr;
+    }
+
+    Navionics::NavDateTime lastUpdateDateTime = Acdb::NavDateTimeExtensions::EpochToNavDateTime(Acdb::UNIX_EPOCH, lastUpdate);
+    std::string lastUpdateStr;
+    lastUpdateDateTime.ToString(lastUpdateStr, YYYYMMDDTHHMMSSZ_FORMAT);
+
+    return env->NewStringUTF(lastUpdateStr.c_str());
+}
+
+void findSearchMarkers(Acdb::IDataService& dataService, const std::string& nameStr, jdouble south, jdouble west, jdouble north, jdouble east, jint maxResultCount, std::vector<Acdb::ISearchMarkerPtr>& searchMarkers) {
+    Acdb::SearchMarkerFilter filter;
+
+    if (!nameStr.empty()) {
+        filter.SetSearchString(nameStr);
+    }
+
+    filter.SetBbox(getBbox(south, west, north, east));
+
+    filter.AddType(ACDB_ALL_TYPES);
+    filter.AddCategory(Acdb::SearchMarkerFilter::Any);
+    filter.SetMaxResults(maxResultCount);
+
+    dataService.GetSearchMarkersByFilter(filter, searchMarkers);
+}
+
+// Renders the content for an acdb:// URL.  Returns the Java ActionType, and sets isHtml if the
+// content is rendered HTML rather than a URL or ID.
+jobject renderAcdbUrl(Acdb::IDataService& dataService, const std::string& urlStr, const std::string& captainNameStr, jint pageSize, std::string& contentStr, bool& isHtml) {
+    Acdb::AcdbUrlActionPtr action;
+    jobject jActionType = jniCache.unknownActionType;
+    isHtml = false;
+
+    if (Acdb::ParseAcdbUrl(urlStr, action))
+    {
+        std::map<Acdb::AcdbUrlAction::ActionType, jobject>::const_iterator actionIt = jniCache.actionTypes.find(action->GetAction());
+        if (actionIt != jniCache.actionTypes.end())
+        {
+            jActionType = actionIt->second;
+        }
+
+        switch (action->GetAction())
+        {
+            case Acdb::AcdbUrlAction::ActionType::SeeAll:
+            {
+                Acdb::SeeAllAction* seeAllAction = static_cast<Acdb::SeeAllAction*>(action.get());
+
+                if (Acdb::IsReviewsSection(seeAllAction->GetSection())) {
+                    contentStr = dataService.GetReviewListHtml(seeAllAction->GetMarkerId(), seeAllAction->GetPageNumber(), pageSize, captainNameStr);
+                } else {
+                    contentStr = dataService.GetSectionPageHtml(seeAllAction->GetMarkerId(), seeAllAction->GetSection());
+                }
+
+                isHtml = true;
+                break;
+            }
+            case Acdb::AcdbUrlAction::ActionType::ShowPhotos:
+            {
+                Acdb::ShowPhotosAction* showPhotosAction = static_cast<Acdb::ShowPhotosAction*>(action.get());
+                contentStr = dataService.GetBusinessPhotoListHtml(showPhotosAction->GetMarkerId());
+
+                isHtml = true;
+                break;
+            }
+            case Acdb::AcdbUrlAction::ActionType::ShowSummary:
+            {
+                Acdb::ShowSummaryAction* showSummaryAction = static_cast<Acdb::ShowSummaryAction*>(action.get());
+                contentStr = dataService.GetPresentationMarkerHtml(showSummaryAction->GetMarkerId(), captainNameStr);
+
+                isHtml = true;
+                break;
+            }
+            case Acdb::AcdbUrlAction::ActionType::Edit:
+            {
+                Acdb::EditAction* editAction = static_cast<Acdb::EditAction*>(action.get());
+                contentStr = editAction->GetUrl();
+
+                break;
+            }
+            case Acdb::AcdbUrlAction::ActionType::ReportReview:
+            {
+                Acdb::ReportReviewAction* reportReviewAction = static_cast<Acdb::ReportReviewAction*>(action.get());
+                contentStr = reportReviewAction->GetUrl();
+
+                break;
+            }
+            case Acdb::AcdbUrlAction::ActionType::VoteReview:
+            {
+                Acdb::VoteReviewAction* voteAction = static_cast<Acdb::VoteReviewAction*>(action.get());
+                contentStr = std::to_string(voteAction->GetReviewId());
+
+                break;
+            }
+        }
+    }
+
+    return jActionType;
+}
+
+extern "C" {
+    jint JNI_OnLoad(JavaVM* vm, void* reserved) {
+        JNIEnv* env;
+        if (vm->GetEnv(reinterpret_cast<void**>(&env), JNI_VERSION_1_6) != JNI_OK) {
+            return JNI_ERR;
+        }
+
+        jclass enumClazz = env->FindClass("java/lang/Enum");
+        jniCache.enumOrdinalMethodId = env->GetMethodID(enumClazz, "ordinal", "()I");
+        env->DeleteLocalRef(enumClazz);
+
+        sqlite3_auto_extension(reinterpret_cast<void (*)(void)>(recordConnection));
+
+        jniCache.acdbUrlActionClass = findGlobalClass(env, "com/garmin/marine/activecaptaincommunitysdk/DTO/AcdbUrlAction");
+        jniCache.hashMapClass = findGlobalClass(env, "java/util/HashMap");
+        jniCache.lastUpdateInfoTypeClass = findGlobalClass(env, "com/garmin/marine/activecaptaincommunitysdk/DTO/LastUpdateInfoType");
+        jniCache.searchMarkerClass = findGlobalClass(env, "com/garmin/marine/activecaptaincommunitysdk/DTO/SearchMarker");
+        jniCache.syncPageResultClass = findGlobalClass(env, "com/garmin/marine/activecaptaincommunitysdk/DTO/SyncPageResult");
+        jniCache.tileLastModifiedListClass = findGlobalClass(env, "com/garmin/marine/activecaptaincommunitysdk/DTO/TileLastModifiedList");
+        jniCache.tileInstallStatsClass = findGlobalClass(env, "com/garmin/marine/activecaptaincommunitysdk/DTO/TileInstallStats");
+        jniCache.tileXYClass = findGlobalClass(env, "com/garmin/marine/activecaptaincommunitysdk/DTO/TileXY");
+        jniCache.stringClass = findGlobalClass(env, "java/lang/String");
+
+        if (!jniCache.acdbUrlActionClass || !jniCache.hashMapClass || !jniCache.lastUpdateInfoTypeClass || !jniCache.searchMarkerClass || !jniCache.syncPageResultClass || !jniCache.tileLastModifiedListClass || !jniCache.tileInstallStatsClass || !jniCache.tileXYClass || !jniCache.stringClass)
+        {
+            return JNI_ERR;
+        }
+
+        jniCache.acdbUrlActionInitMethodId = env->GetMethodID(jniCache.acdbUrlActionClass, "<init>",
+                                                              "(Lcom/garmin/marine/activecaptaincommunitysdk/DTO/AcdbUrlAction$ActionType;Ljava/lang/String;)V");
+        jniCache.acdbUrlActionBytesInitMethodId = env->GetMethodID(jniCache.acdbUrlActionClass, "<init>",
+                                                                   "(Lcom/garmin/marine/activecaptaincommunitysdk/DTO/AcdbUrlAction$ActionType;[B)V");
+        jniCache.hashMapInitMethodId = env->GetMethodID(jniCache.hashMapClass, "<init>", "()V");
+        jniCache.hashMapPutMethodId = env->GetMethodID(jniCache.hashMapClass, "put", "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;");
+        jniCache.lastUpdateInfoTypeInitMethodId = env->GetMethodID(jniCache.lastUpdateInfoTypeClass, "<init>",
+                                                                   "(Ljava/lang/String;Ljava/lang/String;)V");
+        jniCache.searchMarkerInitMethodId = env->GetMethodID(jniCache.searchMarkerClass, "<init>",
+                                                             "(JLjava/lang/String;Lcom/garmin/marine/activecaptaincommunitysdk/DTO/MarkerType;DDLcom/garmin/marine/activecaptaincommunitysdk/DTO/MapIconType;)V");
+        jniCache.syncPageResultInitMethodId = env->GetMethodID(jniCache.syncPageResultClass, "<init>", "(IJ)V");
+        jniCache.tileLastModifiedListInitMethodId = env->GetMethodID(jniCache.tileLastModifiedListClass, "<init>", "([I[I[J[J)V");
+        jniCache.tileInstallStatsInitMethodId = env->GetMethodID(jniCache.tileInstallStatsClass, "<init>", "(IIJJJ)V");
+        jniCache.tileXYInitMethodId = env->GetMethodID(jniCache.tileXYClass, "<init>", "(II)V");
+        jniCache.stringBytesInitMethodId = env->GetMethodID(jniCache.stringClass, "<init>", "([BLjava/lang/String;)V");
+
+        jstring utf8CharsetName = env->NewStringUTF("UTF-8");
+        jniCache.utf8CharsetName = (jstring)env->NewGlobalRef(utf8CharsetName);
+        env->DeleteLocalRef(utf8CharsetName);
+
+        jclass searchResultBufferClazz = env->FindClass("com/garmin/marine/activecaptaincommunitysdk/DTO/SearchResultBuffer");
+        jniCache.searchResultBufferCountFieldId = env->GetFieldID(searchResultBufferClazz, "count", "I");
+        jniCache.searchResultBufferMarkerIdsFieldId = env->GetFieldID(searchResultBufferClazz, "markerIds", "[J");
+        jniCache.searchResultBufferLatitudesFieldId = env->GetFieldID(searchResultBufferClazz, "latitudes", "[D");
+        jniCache.searchResultBufferLongitudesFieldId = env->GetFieldID(searchResultBufferClazz, "longitudes", "[D");
+        jniCache.searchResultBufferMarkerTypesFieldId = env->GetFieldID(searchResultBufferClazz, "markerTypes", "[B");
+        jniCache.searchResultBufferMapIconsFieldId = env->GetFieldID(searchResultBufferClazz, "mapIcons", "[B");
+        jniCache.searchResultBufferNameOffsetsFieldId = env->GetFieldID(searchResultBufferClazz, "nameOffsets", "[I");
+        jniCache.searchResultBufferNamesFieldId = env->GetFieldID(searchResultBufferClazz, "names", "[B");
+        env->DeleteLocalRef(searchResultBufferClazz);
+
+        const char* actionTypeName = "com/garmin/marine/activecaptaincommunitysdk/DTO/AcdbUrlAction$ActionType";
+
+        jniCache.unknownActionType = getGlobalEnumValue(env, actionTypeName, "UNKNOWN");
+        jniCache.actionTypes = {
+            {Acdb::AcdbUrlAction::ActionType::Edit, getGlobalEnumValue(env, actionTypeName, "EDIT")},
+            {Acdb::AcdbUrlAction::ActionType::ReportReview, getGlobalEnumValue(env, actionTypeName, "REPORT_REVIEW")},
+            {Acdb::AcdbUrlAction::ActionType::SeeAll, getGlobalEnumValue(env, actionTypeName, "SEE_ALL")},
+            {Acdb::AcdbUrlAction::ActionType::ShowPhotos, getGlobalEnumValue(env, actionTypeName, "SHOW_PHOTOS")},
+            {Acdb::AcdbUrlAction::ActionType::ShowSummary, getGlobalEnumValue(env, actionTypeName, "SHOW_SUMMARY")},
+            {Acdb::AcdbUrlAction::ActionType::VoteReview, getGlobalEnumValue(env, actionTypeName, "VOTE_REVIEW")}
+        };
+
+        const char* markerTypeName = "com/garmin/marine/activecaptaincommunitysdk/DTO/MarkerType";
+
+        jniCache.markerTypes = {
+            {ACDB_UNKNOWN_TYPE, getGlobalEnumValue(env, markerTypeName, "UNKNOWN")},
+            {ACDB_ANCHORAGE, getGlobalEnumValue(env, markerTypeName, "ANCHORAGE")},
+            {ACDB_BOAT_RAMP, getGlobalEnumValue(env, markerTypeName, "BOAT_RAMP")},
+            {ACDB_BRIDGE, getGlobalEnumValue(env, markerTypeName, "BRIDGE")},
+            {ACDB_BUSINESS, getGlobalEnumValue(env, markerTypeName, "BUSINESS")},
+            {ACDB_DAM, getGlobalEnumValue(env, markerTypeName, "DAM")},
+            {ACDB_FERRY, getGlobalEnumValue(env, markerTypeName, "FERRY")},
+            {ACDB_HAZARD, getGlobalEnumValue(env, markerTypeName, "HAZARD")},
+            {ACDB_INLET, getGlobalEnumValue(env, markerTypeName, "INLET")},
+            {ACDB_LOCK, getGlobalEnumValue(env, markerTypeName, "LOCK")},
+            {ACDB_MARINA, getGlobalEnumValue(env, markerTypeName, "MARINA")}
+        };
+
+        const char* mapIconTypeName = "com/garmin/marine/activecaptaincommunitysdk/DTO/MapIconType";
+
+        jniCache.mapIconTypes = {
+            {Acdb::MapIconType::Unknown, getGlobalEnumValue(env, mapIconTypeName, "UNKNOWN")},
+            {Acdb::MapIconType::Anchorage, getGlobalEnumValue(env, mapIconTypeName, "ANCHORAGE")},
+            {Acdb::MapIconType::BoatRamp, getGlobalEnumValue(env, mapIconTypeName, "BOAT_RAMP")},
+            {Acdb::MapIconType::Bridge, getGlobalEnumValue(env, mapIconTypeName, "BRIDGE")},
+            {Acdb::MapIconType::Business, getGlobalEnumValue(env, mapIconTypeName, "BUSINESS")},
+            {Acdb::MapIconType::Dam, getGlobalEnumValue(env, mapIconTypeName, "DAM")},
+            {Acdb::MapIconType::Ferry, getGlobalEnumValue(env, mapIconTypeName, "FERRY")},
+            {Acdb::MapIconType::Hazard, getGlobalEnumValue(env, mapIconTypeName, "HAZARD")},
+            {Acdb::MapIconType::Inlet, getGlobalEnumValue(env, mapIconTypeName, "INLET")},
+            {Acdb::MapIconType::Lock, getGlobalEnumValue(env, mapIconTypeName, "LOCK")},
+            {Acdb::MapIconType::Marina, getGlobalEnumValue(env, mapIconTypeName, "MARINA")},
+            {Acdb::MapIconType::AnchorageSponsor, getGlobalEnumValue(env, mapIconTypeName, "ANCHORAGE_SPONSOR")},
+            {Acdb::MapIconType::BusinessSponsor, getGlobalEnumValue(env, mapIconTypeName, "BUSINESS_SPONSOR")},
+            {Acdb::MapIconType::MarinaSponsor, getGlobalEnumValue(env, mapIconTypeName, "MARINA_SPONSOR")}
+        };
 
-std::string getString(JNIEnv* env, jobject obj, jstring jstr) {
-    if (jstr != nullptr) {
-        const char* chars = env->GetStringUTFChars(jstr, nullptr);
-        std::string result{chars};
-        env->ReleaseStringUTFChars(jstr, chars);
+        for (auto& markerType : jniCache.markerTypes) {
+            jniCache.markerTypeOrdinals[markerType.first] = (jbyte)getEnumValue(env, markerType.second);
+        }
 
-        return result;
-    } else {
-        return std::string{};
+        for (auto& mapIconType : jniCache.mapIconTypes) {
+            jniCache.mapIconTypeOrdinals[mapIconType.first] = (jbyte)getEnumValue(env, mapIconType.second);
+        }
+
+        return JNI_VERSION_1_6;
     }
-}
 
-struct SmartPointerHolder
-{
-    Acdb::RepositoryPtr repository;
-    DataServicePtr dataService;
-    UpdateServicePtr updateService;
-};
+    void JNI_OnUnload(JavaVM* vm, void* reserved) {
+        JNIEnv* env;
+        if (vm->GetEnv(reinterpret_cast<void**>(&env), JNI_VERSION_1_6) != JNI_OK) {
+            return;
+        }
 
-jfieldID getPtrFieldId(JNIEnv* env, jobject obj) {
-    static jfieldID ptrFieldId = 0;
+        for (auto& actionType : jniCache.actionTypes) {
+            env->DeleteGlobalRef(actionType.second);
+        }
 
-    if (!ptrFieldId) {
-        jclass c = env->GetObjectClass(obj);
-        ptrFieldId = env->GetFieldID(c, "ptrHolder", "J");
-        env->DeleteLocalRef(c);
-    }
+        for (auto& markerType : jniCache.markerTypes) {
+            env->DeleteGlobalRef(markerType.second);
+        }
 
-    return ptrFieldId;
-}
+        for (auto& mapIconType : jniCache.mapIconTypes) {
+            env->DeleteGlobalRef(mapIconType.second);
+        }
 
-extern "C" {
-    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_init(JNIEnv* env, jobject obj, jstring databasePathJstr, jstring languageCodeJstr) {
+        env->DeleteGlobalRef(jniCache.unknownActionType);
+        env->DeleteGlobalRef(jniCache.acdbUrlActionClass);
+        env->DeleteGlobalRef(jniCache.hashMapClass);
+        env->DeleteGlobalRef(jniCache.lastUpdateInfoTypeClass);
+        env->DeleteGlobalRef(jniCache.searchMarkerClass);
+        env->DeleteGlobalRef(jniCache.syncPageResultClass);
+        env->DeleteGlobalRef(jniCache.tileLastModifiedListClass);
+        env->DeleteGlobalRef(jniCache.tileInstallStatsClass);
+        env->DeleteGlobalRef(jniCache.tileXYClass);
+        env->DeleteGlobalRef(jniCache.stringClass);
+        env->DeleteGlobalRef(jniCache.utf8CharsetName);
+
+        jniCache = JniCache{};
+    }
+
+    jlong Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_init(JNIEnv* env, jclass clazz, jstring databasePathJstr, jstring languageCodeJstr, jint readConnectionCount) {
         SmartPointerHolder* holder = new SmartPointerHolder;
 
-        std::string databasePathStr = getString(env, obj, databasePathJstr);
-        std::string languageCodeStr = getString(env, obj, languageCodeJstr);
+        std::string databasePathStr = getString(env, clazz, databasePathJstr);
+        std::string languageCodeStr = getString(env, clazz, languageCodeJstr);
+
+        holder->databasePath = databasePathStr;
+        holder->languageCode = languageCodeStr;
+
+        // Left behind if the process died during an install, the database itself is intact.
+        removeDatabaseFiles(databasePathStr + ".shadow");
+        removeScratchFiles(databasePathStr);
+
+        if (readConnectionCount > 0) {
+            enableWriteAheadLog(databasePathStr);
+        }
+
+        holder->writer.repository.reset(new Acdb::Repository{databasePathStr});
+        openWriter(holder, [holder] {
+            holder->writer.repository->Open();
+        });
+        holder->updateService.reset( new Acdb::UpdateService{holder->writer.repository});
 
-        holder->repository.reset(new Acdb::Repository{databasePathStr});
-        holder->repository->Open();
-        holder->dataService.reset( new Acdb::DataService{holder->repository, languageCodeStr});
-        holder->updateService.reset( new Acdb::UpdateService{holder->repository});
+        if (readConnectionCount > 0) {
+            holder->readers.resize(readConnectionCount);
+
+            for (Connection& reader : holder->readers) {
+                reader.repository.reset(new Acdb::Repository{databasePathStr});
+                reader.repository->Open();
+                reader.dataService.reset( new Acdb::DataService{reader.repository, languageCodeStr});
+                holder->idleReaders.push_back(&reader);
+            }
+        } else {
+            holder->writer.dataService.reset( new Acdb::DataService{holder->writer.repository, languageCodeStr});
+        }
 
-        env->SetLongField(obj, getPtrFieldId(env, obj), (jlong)holder);
+        return (jlong)holder;
     }
 
-    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_cleanup(JNIEnv* env, jobject obj) {
-        SmartPointerHolder* holder = (SmartPointerHolder*) env->GetLongField(obj, getPtrFieldId(env, obj));
+    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_cleanup(JNIEnv* env, jclass clazz, jlong ptr) {
+        // The Java side guarantees no other call is using the handle, so the lock is not taken here.
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+
+        for (Connection& reader : holder->readers) {
+            reader.repository->Close();
+        }
 
-        holder->repository->Close();
+        holder->writer.repository->Close();
 
-        env->SetLongField(obj, getPtrFieldId(env, obj), (jlong)0);
         delete holder;
     }
 
 
     // Repository functions
 
-    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_deleteDatabase(JNIEnv* env, jobject obj) {
-        SmartPointerHolder* holder = (SmartPointerHolder*) env->GetLongField(obj, getPtrFieldId(env, obj));
+    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_deleteDatabase(JNIEnv* env, jclass clazz, jlong ptr) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        std::lock_guard<std::mutex> writeLock{holder->writeMutex};
+        WriteLock lock{holder->mutex};
 
-        holder->repository->Delete();
+        for (Connection& reader : holder->readers) {
+            reader.repository->Close();
+        }
+
+        // Delete's effect on the writer connection is internal to acdb, so sync tuning is off until
+        // the writer is next reopened.
+        holder->writerDb = nullptr;
+        holder->writer.repository->Delete();
+
+        // Left behind if the database was deleted while a deferred sync window had it in WAL mode.
+        std::remove((holder->databasePath + "-wal").c_str());
+        std::remove((holder->databasePath + "-shm").c_str());
+
+        reopenReadConnections(holder);
     }
 
-    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_deleteTile(JNIEnv* env, jobject obj, jint tileX, jint tileY) {
-        SmartPointerHolder* holder = (SmartPointerHolder*) env->GetLongField(obj, getPtrFieldId(env, obj));
+    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_deleteTile(JNIEnv* env, jclass clazz, jlong ptr, jint tileX, jint tileY) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLease lease{holder};
 
         Acdb::TileXY tileXY{tileX, tileY};
-        holder->repository->DeleteTile(tileXY, true);
+        holder->writer.repository->DeleteTile(tileXY, true);
     }
 
-    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_deleteTileReviews(JNIEnv* env, jobject obj, jint tileX, jint tileY) {
-        SmartPointerHolder* holder = (SmartPointerHolder*) env->GetLongField(obj, getPtrFieldId(env, obj));
+    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_deleteTileReviews(JNIEnv* env, jclass clazz, jlong ptr, jint tileX, jint tileY) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLease lease{holder};
 
         Acdb::TileXY tileXY{tileX, tileY};
-        holder->repository->DeleteTileReviews(tileXY);
+        holder->writer.repository->DeleteTileReviews(tileXY);
     }
 
-    jobject Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_getTileLastModified(JNIEnv* env, jobject obj, jint tileX, jint tileY) {
-        SmartPointerHolder* holder = (SmartPointerHolder*) env->GetLongField(obj, getPtrFieldId(env, obj));
+    jobject Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_getTileLastModified(JNIEnv* env, jclass clazz, jlong ptr, jint tileX, jint tileY) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        ReadLease connection{holder};
 
-        jclass clazz = env->FindClass(
-                "com/garmin/marine/activecaptaincommunitysdk/DTO/LastUpdateInfoType");
+        Acdb::TileXY tileXY{tileX, tileY};
+        Acdb::LastUpdateInfoType lastUpdateInfo;
 
-        if (!clazz)
-        {
-            return nullptr;
-        }
+        connection->repository->GetTileLastUpdateInfo(tileXY, lastUpdateInfo);
 
-        jmethodID initMethodId = env->GetMethodID(clazz, "<init>",
-                                              "(Ljava/lang/String;Ljava/lang/String;)V");
+        jstring markerLastUpdateJstr = newLastUpdateString(env, lastUpdateInfo.mMarkerLastUpdate);
+        jstring reviewLastUpdateJstr = newLastUpdateString(env, lastUpdateInfo.mUserReviewLastUpdate);
 
-        if (!initMethodId)
-        {
-            return nullptr;
-        }
+        return env->NewObject(jniCache.lastUpdateInfoTypeClass, jniCache.lastUpdateInfoTypeInitMethodId, markerLastUpdateJstr, reviewLastUpdateJstr);
+    }
 
-        Acdb::TileXY tileXY{tileX, tileY};
-        Acdb::LastUpdateInfoType lastUpdateInfo;
+jobject Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_getTilesLastModifiedByBoundingBox(JNIEnv* env, jclass clazz, jlong ptr, jdouble south, jdouble west, jdouble north, jdouble east) {
+    SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+    ReadLease connection{holder};
+
+    std::vector<bbox_type> bboxes{getBbox(south, west, north, east)};
+    std::map<Acdb::TileXY, Acdb::LastUpdateInfoType> lastUpdateInfos;
+
+    connection->repository->GetTilesLastUpdateInfoByBoundingBoxes(bboxes, lastUpdateInfos);
+
+    jobject result = env->NewObject(jniCache.hashMapClass, jniCache.hashMapInitMethodId);
+
+    for (std::map<Acdb::TileXY, Acdb::LastUpdateInfoType>::iterator it = lastUpdateInfos.begin(); it != lastUpdateInfos.end(); it++)
+    {
+        jstring markerLastUpdateJstr = newLastUpdateString(env, it->second.mMarkerLastUpdate);
+        jstring reviewLastUpdateJstr = newLastUpdateString(env, it->second.mUserReviewLastUpdate);
+
+        jobject tileXY = env->NewObject(jniCache.tileXYClass, jniCache.tileXYInitMethodId, it->first.mX, it->first.mY);
+        jobject lastUpdateInfo = env->NewObject(jniCache.lastUpdateInfoTypeClass, jniCache.lastUpdateInfoTypeInitMethodId, markerLastUpdateJstr, reviewLastUpdateJstr);
+        env->CallObjectMethod(result, jniCache.hashMapPutMethodId, tileXY, lastUpdateInfo);
+
+        env->DeleteLocalRef(tileXY);
+        env->DeleteLocalRef(lastUpdateInfo);
+        env->DeleteLocalRef(markerLastUpdateJstr);
+        env->DeleteLocalRef(reviewLastUpdateJstr);
+    }
+
+    return result;
+}
 
-        holder->repository->GetTileLastUpdateInfo(tileXY, lastUpdateInfo);
+    jobject Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_getTilesLastModified(JNIEnv* env, jclass clazz, jlong ptr, jdoubleArray boxesArray) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        ReadLease connection{holder};
 
-        jstring markerLastUpdateJstr = nullptr;
-        jstring reviewLastUpdateJstr = nullptr;
+        jsize boxCount = env->GetArrayLength(boxesArray) / 4;
+        std::vector<jdouble> boxes(boxCount * 4);
+        env->GetDoubleArrayRegion(boxesArray, 0, boxCount * 4, boxes.data());
 
-        if (lastUpdateInfo.mMarkerLastUpdate != 0) {
-            Navionics::NavDateTime markerLastUpdate = Acdb::NavDateTimeExtensions::EpochToNavDateTime(Acdb::UNIX_EPOCH, lastUpdateInfo.mMarkerLastUpdate);
-            std::string markerLastUpdateStr;
-            markerLastUpdate.ToString(markerLastUpdateStr, YYYYMMDDTHHMMSSZ_FORMAT);
-            markerLastUpdateJstr = env->NewStringUTF(markerLastUpdateStr.c_str());
+        std::vector<bbox_type> bboxes;
+        bboxes.reserve(boxCount);
+        for (jsize i = 0; i < boxCount; i++) {
+            bboxes.push_back(getBbox(boxes[i * 4], boxes[i * 4 + 1], boxes[i * 4 + 2], boxes[i * 4 + 3]));
         }
 
-        if (lastUpdateInfo.mUserReviewLastUpdate != 0) {
-            Navionics::NavDateTime reviewLastUpdate = Acdb::NavDateTimeExtensions::EpochToNavDateTime(Acdb::UNIX_EPOCH, lastUpdateInfo.mUserReviewLastUpdate);
-            std::string reviewLastUpdateStr;
-            reviewLastUpdate.ToString(reviewLastUpdateStr, YYYYMMDDTHHMMSSZ_FORMAT);
-            reviewLastUpdateJstr = env->NewStringUTF(reviewLastUpdateStr.c_str());
+        // Tiles overlapped by more than one box are only reported once.
+        std::map<Acdb::TileXY, Acdb::LastUpdateInfoType> lastUpdateInfos;
+        connection->repository->GetTilesLastUpdateInfoByBoundingBoxes(bboxes, lastUpdateInfos);
+
+        jsize count = (jsize)lastUpdateInfos.size();
+        std::vector<jint> tileX;
+        std::vector<jint> tileY;
+        std::vector<jlong> markerLastModified;
+        std::vector<jlong> reviewLastModified;
+        tileX.reserve(count);
+        tileY.reserve(count);
+        markerLastModified.reserve(count);
+        reviewLastModified.reserve(count);
+
+        for (const auto& lastUpdateInfo : lastUpdateInfos) {
+            tileX.push_back(lastUpdateInfo.first.mX);
+            tileY.push_back(lastUpdateInfo.first.mY);
+            markerLastModified.push_back((jlong)lastUpdateInfo.second.mMarkerLastUpdate * 1000);
+            reviewLastModified.push_back((jlong)lastUpdateInfo.second.mUserReviewLastUpdate * 1000);
         }
 
-        return env->NewObject(clazz, initMethodId, markerLastUpdateJstr, reviewLastUpdateJstr);
-    }
+        jintArray tileXArray = env->NewIntArray(count);
+        jintArray tileYArray = env->NewIntArray(count);
+        jlongArray markerLastModifiedArray = env->NewLongArray(count);
+        jlongArray reviewLastModifiedArray = env->NewLongArray(count);
 
-jobject Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_getTilesLastModifiedByBoundingBox(JNIEnv* env, jobject obj, jdouble south, jdouble west, jdouble north, jdouble east) {
-    SmartPointerHolder* holder = (SmartPointerHolder*) env->GetLongField(obj, getPtrFieldId(env, obj));
+        if (!tileXArray || !tileYArray || !markerLastModifiedArray || !reviewLastModifiedArray)
+        {
+            return nullptr;
+        }
 
-    jclass tileXYClazz = env->FindClass(
-            "com/garmin/marine/activecaptaincommunitysdk/DTO/TileXY");
+        env->SetIntArrayRegion(tileXArray, 0, count, tileX.data());
+        env->SetIntArrayRegion(tileYArray, 0, count, tileY.data());
+        env->SetLongArrayRegion(markerLastModifiedArray, 0, count, markerLastModified.data());
+        env->SetLongArrayRegion(reviewLastModifiedArray, 0, count, reviewLastModified.data());
 
-    if (!tileXYClazz)
-    {
-        return nullptr;
+        return env->NewObject(jniCache.tileLastModifiedListClass, jniCache.tileLastModifiedListInitMethodId, tileXArray, tileYArray, markerLastModifiedArray, reviewLastModifiedArray);
     }
 
-    jmethodID tileXYInitMethodId = env->GetMethodID(tileXYClazz, "<init>",
-                                              "(II)V");
-
-    if (!tileXYInitMethodId)
-    {
-        return nullptr;
+    jstring Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_formatLastModified(JNIEnv* env, jclass clazz, jlong epochMillis) {
+        return newLastUpdateString(env, (uint64_t)(epochMillis / 1000));
     }
 
-    jclass lastUpdateInfoTypeClazz = env->FindClass("com/garmin/marine/activecaptaincommunitysdk/DTO/LastUpdateInfoType");
+    jstring Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_getVersion(JNIEnv* env, jclass clazz, jlong ptr) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        ReadLease connection{holder};
 
-    if (!lastUpdateInfoTypeClazz)
-    {
-        return nullptr;
+        Acdb::Version version = connection->repository->GetVersion();
+
+        return env->NewStringUTF(version.ToString().c_str());
     }
 
-    jmethodID lastUpdateInfoTypeInitMethodId = env->GetMethodID(lastUpdateInfoTypeClazz, "<init>",
-                                                                "(Ljava/lang/String;Ljava/lang/String;)V");
+    jobject Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_installTile(JNIEnv* env, jclass clazz, jlong ptr, jstring pathJstr, jint tileX, jint tileY) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
 
-    if (!lastUpdateInfoTypeInitMethodId)
-    {
-        return nullptr;
+        std::string pathStr = getString(env, clazz, pathJstr);
+
+        return installTileDatabase(env, holder, pathStr, tileX, tileY, 0);
     }
 
-    jclass hashMapClazz = env->FindClass("java/util/HashMap");
+    jobject Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_installCompressedTile(JNIEnv* env, jclass clazz, jlong ptr, jstring gzipPathJstr, jint tileX, jint tileY) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
 
-    if (!hashMapClazz)
-    {
-        return nullptr;
+        std::string gzipPathStr = getString(env, clazz, gzipPathJstr);
+
+        return installCompressedTileDatabase(env, holder, gzipPathStr, tileX, tileY);
     }
 
-    jmethodID hashMapInitMethodId = env->GetMethodID(hashMapClazz, "<init>", "()V");
-    jmethodID hashMapPutMethodId = env->GetMethodID(hashMapClazz, "put", "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;");
+    jobjectArray Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_installTiles(JNIEnv* env, jclass clazz, jlong ptr, jobjectArray pathsArray, jintArray tileXArray, jintArray tileYArray, jboolean compressed) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
 
-    bbox_type bbox;
-    bbox.nec.lat = (int32_t)north * UTL_DEG_TO_SEMI;
-    bbox.nec.lon = (int32_t)east * UTL_DEG_TO_SEMI;
-    bbox.swc.lat = (int32_t)south * UTL_DEG_TO_SEMI;
-    bbox.swc.lon = (int32_t)west * UTL_DEG_TO_SEMI;
+        jsize count = env->GetArrayLength(pathsArray);
+        std::vector<jint> tileX(count);
+        std::vector<jint> tileY(count);
+        env->GetIntArrayRegion(tileXArray, 0, count, tileX.data());
+        env->GetIntArrayRegion(tileYArray, 0, count, tileY.data());
 
-    std::vector<bbox_type> bboxes{bbox};
-    std::map<Acdb::TileXY, Acdb::LastUpdateInfoType> lastUpdateInfos;
+        jobjectArray statsArray = env->NewObjectArray(count, jniCache.tileInstallStatsClass, nullptr);
+        if (!statsArray)
+        {
+            return nullptr;
+        }
 
-    holder->repository->GetTilesLastUpdateInfoByBoundingBoxes(bboxes, lastUpdateInfos);
+        std::vector<std::string> paths;
+        paths.reserve(count);
 
-    jobject result = env->NewObject(hashMapClazz, hashMapInitMethodId);
+        for (jsize i = 0; i < count; i++) {
+            jstring pathJstr = (jstring)env->GetObjectArrayElement(pathsArray, i);
+            paths.push_back(getString(env, clazz, pathJstr));
+            env->DeleteLocalRef(pathJstr);
+        }
 
-    for (std::map<Acdb::TileXY, Acdb::LastUpdateInfoType>::iterator it = lastUpdateInfos.begin(); it != lastUpdateInfos.end(); it++)
-    {
-        jstring markerLastUpdateJstr = nullptr;
-        jstring reviewLastUpdateJstr = nullptr;
+        // A single tile is installed all or nothing by acdb, so gains nothing from a copy.
+        if (count == 1) {
+            try {
+                for (jsize i = 0; i < count; i++) {
+                    jobject stats = (compressed == true) ? installCompressedTileDatabase(env, holder, paths[i], tileX[i], tileY[i]) : installTileDatabase(env, holder, paths[i], tileX[i], tileY[i], 0);
+                    if (stats == nullptr) {
+                        return nullptr;
+                    }
 
-        if (it->second.mMarkerLastUpdate != 0) {
-            Navionics::NavDateTime markerLastUpdate = Acdb::NavDateTimeExtensions::EpochToNavDateTime(Acdb::UNIX_EPOCH, it->second.mMarkerLastUpdate);
-            std::string markerLastUpdateStr;
-            markerLastUpdate.ToString(markerLastUpdateStr, YYYYMMDDTHHMMSSZ_FORMAT);
-            markerLastUpdateJstr = env->NewStringUTF(markerLastUpdateStr.c_str());
+                    env->SetObjectArrayElement(statsArray, i, stats);
+                    env->DeleteLocalRef(stats);
+                }
+            } catch (...) {
+                return nullptr;
+            }
+
+            return statsArray;
         }
 
-        if (it->second.mUserReviewLastUpdate != 0) {
-            Navionics::NavDateTime reviewLastUpdate = Acdb::NavDateTimeExtensions::EpochToNavDateTime(Acdb::UNIX_EPOCH, it->second.mUserReviewLastUpdate);
-            std::string reviewLastUpdateStr;
-            reviewLastUpdate.ToString(reviewLastUpdateStr, YYYYMMDDTHHMMSSZ_FORMAT);
-            reviewLastUpdateJstr = env->NewStringUTF(reviewLastUpdateStr.c_str());
+        // Installing a batch into the live database could leave some of its tiles installed, so a
+        // batch without room for the copy fails before changing anything.
+        if (!hasSpaceForCopy(holder->databasePath, paths)) {
+            return nullptr;
         }
 
-        jobject tileXY = env->NewObject(tileXYClazz, tileXYInitMethodId, it->first.mX, it->first.mY);
-        jobject lastUpdateInfo = env->NewObject(lastUpdateInfoTypeClazz, lastUpdateInfoTypeInitMethodId, markerLastUpdateJstr, reviewLastUpdateJstr);
-        env->CallObjectMethod(result, hashMapPutMethodId, tileXY, lastUpdateInfo);
-    }
+        // Tiles are merged into a copy of the database, which then replaces it.  Other writes wait
+        // for the whole batch, while reads continue on the live database until the swap.
+        std::lock_guard<std::mutex> writeLock{holder->writeMutex};
 
-    return result;
-}
+        std::string shadowPathStr = holder->databasePath + ".shadow";
+        removeDatabaseFiles(shadowPathStr);
 
-    jstring Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_getVersion(JNIEnv* env, jobject obj) {
-        SmartPointerHolder* holder = (SmartPointerHolder*) env->GetLongField(obj, getPtrFieldId(env, obj));
+        if (!copyDatabase(holder->databasePath, shadowPathStr)) {
+            removeDatabaseFiles(shadowPathStr);
+            return nullptr;
+        }
 
-        Acdb::Version version = holder->repository->GetVersion();
+        // acdb reports some failures by throwing, which must not cross the JNI boundary.  Any
+        // failure discards the copy and leaves the live database as it was.
+        Acdb::RepositoryPtr shadow{new Acdb::Repository{shadowPathStr}};
+        sqlite3* shadowDb = nullptr;
+        std::string scratchPathStr;
+        bool success = true;
+
+        try {
+            shadowDb = openConnection(shadowPathStr, [&shadow] {
+                shadow->Open();
+            });
+
+            for (jsize i = 0; i < count && success; i++) {
+                const std::string& pathStr = paths[i];
+                std::string installPathStr = pathStr;
+                jlong inflateMillis = 0;
+
+                if (compressed == true) {
+                    scratchPathStr = createScratchFile(holder->databasePath);
+                    installPathStr = scratchPathStr;
+
+                    auto inflateStart = std::chrono::steady_clock::now();
+                    success = !scratchPathStr.empty() && inflateFile(pathStr, installPathStr);
+                    inflateMillis = elapsedMillis(inflateStart);
+                }
 
-        return env->NewStringUTF(version.ToString().c_str());
-    }
+                if (success) {
+                    jobject stats = installTileDatabase(env, tileX[i], tileY[i], inflateMillis, [&shadow, shadowDb, &installPathStr, &tileX, &tileY, i] {
+                        return mergeTile(*shadow, shadowDb, installPathStr, tileX[i], tileY[i]);
+                    });
 
-    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_installTile(JNIEnv* env, jobject obj, jstring pathJstr, jint tileX, jint tileY) {
-        SmartPointerHolder* holder = (SmartPointerHolder*) env->GetLongField(obj, getPtrFieldId(env, obj));
+                    // A tile that fails to merge discards the copy, like one that fails to inflate.
+                    success = (stats != nullptr);
 
-        std::string pathStr = getString(env, obj, pathJstr);
-        Acdb::TileXY tileXY{tileX, tileY};
-        holder->repository->InstallSingleTileDatabase(pathStr, tileXY);
-    }
+                    env->SetObjectArrayElement(statsArray, i, stats);
+                    env->DeleteLocalRef(stats);
+                }
 
+                if (!scratchPathStr.empty()) {
+                    std::remove(scratchPathStr.c_str());
+                    scratchPathStr.clear();
+                }
+            }
 
-    // DataService functions
+            shadow->Close();
+        } catch (...) {
+            success = false;
+        }
 
-    jobjectArray Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_getSearchMarkers(JNIEnv* env, jobject obj, jstring nameJstr, jdouble south, jdouble west, jdouble north, jdouble east, jint maxResultCount, jboolean escapeHtml) {
-        SmartPointerHolder* holder = (SmartPointerHolder*) env->GetLongField(obj, getPtrFieldId(env, obj));
+        shadow.reset();
 
-        Acdb::SearchMarkerFilter filter;
+        if (!scratchPathStr.empty()) {
+            std::remove(scratchPathStr.c_str());
+        }
 
-        std::string nameStr = getString(env, obj, nameJstr);
-        if (!nameStr.empty()) {
-            filter.SetSearchString(nameStr);
+        if (success) {
+            // Fold the copy's log, if any, into its main file, which is the only file renamed.
+            success = checkpointWriteAheadLog(shadowPathStr);
         }
 
-        bbox_type bbox;
-        bbox.nec.lat = (int32_t)(north * UTL_DEG_TO_SEMI);
-        bbox.nec.lon = (east == -180.0 || east == 180.0) ? INT32_MAX : (int32_t)(east * UTL_DEG_TO_SEMI);
-        bbox.swc.lat = (int32_t)(south * UTL_DEG_TO_SEMI);
-        bbox.swc.lon = (west == -180.0 || west == 180.0) ? INT32_MIN : (int32_t)(west * UTL_DEG_TO_SEMI);
-        filter.SetBbox(bbox);
+        if (success) {
+            WriteLock lock{holder->mutex};
 
-        filter.AddType(ACDB_ALL_TYPES);
-        filter.AddCategory(Acdb::SearchMarkerFilter::Any);
-        filter.SetMaxResults(maxResultCount);
+            try {
+                for (Connection& reader : holder->readers) {
+                    reader.repository->Close();
+                }
 
-        std::vector<Acdb::ISearchMarkerPtr> searchMarkers;
-        holder->dataService->GetSearchMarkersByFilter(filter, searchMarkers);
+                holder->writer.repository->Close();
+                holder->writerDb = nullptr;
 
-        jclass clazz = env->FindClass("com/garmin/marine/activecaptaincommunitysdk/DTO/SearchMarker");
-        if (!clazz)
-        {
-            return nullptr;
-        }
+                // The live database's log must not be applied to the copy.  It is normally folded in
+                // when the last connection closes.  That is confirmed before removing it, since a
+                // log that still holds commits would lose them if the copy is not moved into place.
+                success = checkpointWriteAheadLog(holder->databasePath);
 
-        jmethodID initMethodId = env->GetMethodID(clazz, "<init>",
-                                                  "(JLjava/lang/String;Lcom/garmin/marine/activecaptaincommunitysdk/DTO/MarkerType;DDLcom/garmin/marine/activecaptaincommunitysdk/DTO/MapIconType;)V");
+                if (success) {
+                    std::remove((holder->databasePath + "-wal").c_str());
+                    std::remove((holder->databasePath + "-shm").c_str());
 
-        if (!initMethodId)
-        {
-            return nullptr;
+                    success = (std::rename(shadowPathStr.c_str(), holder->databasePath.c_str()) == 0);
+                }
+            } catch (...) {
+                success = false;
+            }
+
+            // Reopened whether or not the copy replaced the database, so the handle stays usable.
+            try {
+                openWriter(holder, [holder] {
+                    holder->writer.repository->Open();
+                });
+                reopenReadConnections(holder);
+                reloadLanguage(holder);
+            } catch (...) {
+                success = false;
+            }
         }
 
-        jobjectArray results = env->NewObjectArray(searchMarkers.size(), clazz, nullptr);
+        removeDatabaseFiles(shadowPathStr);
 
-        const char* markerTypeName = "com/garmin/marine/activecaptaincommunitysdk/DTO/MarkerType";
+        return success ? statsArray : nullptr;
+    }
 
-        const std::map<ACDB_type_type, jobject> MARKER_TYPES
-        {
-            {ACDB_UNKNOWN_TYPE, getJEnumValue(env, markerTypeName, "UNKNOWN")},
-            {ACDB_ANCHORAGE, getJEnumValue(env, markerTypeName, "ANCHORAGE")},
-            {ACDB_BOAT_RAMP, getJEnumValue(env, markerTypeName, "BOAT_RAMP")},
-            {ACDB_BRIDGE, getJEnumValue(env, markerTypeName, "BRIDGE")},
-            {ACDB_BUSINESS, getJEnumValue(env, markerTypeName, "BUSINESS")},
-            {ACDB_DAM, getJEnumValue(env, markerTypeName, "DAM")},
-            {ACDB_FERRY, getJEnumValue(env, markerTypeName, "FERRY")},
-            {ACDB_HAZARD, getJEnumValue(env, markerTypeName, "HAZARD")},
-            {ACDB_INLET, getJEnumValue(env, markerTypeName, "INLET")},
-            {ACDB_LOCK, getJEnumValue(env, markerTypeName, "LOCK")},
-            {ACDB_MARINA, getJEnumValue(env, markerTypeName, "MARINA")}
-        };
 
-        const char* mapIconTypeName = "com/garmin/marine/activecaptaincommunitysdk/DTO/MapIconType";
+    // DataService functions
 
-        const std::map<Acdb::MapIconType, jobject> MAP_ICON_TYPES
-        {
-            {Acdb::MapIconType::Unknown, getJEnumValue(env, mapIconTypeName, "UNKNOWN")},
-            {Acdb::MapIconType::Anchorage, getJEnumValue(env, mapIconTypeName, "ANCHORAGE")},
-            {Acdb::MapIconType::BoatRamp, getJEnumValue(env, mapIconTypeName, "BOAT_RAMP")},
-            {Acdb::MapIconType::Bridge, getJEnumValue(env, mapIconTypeName, "BRIDGE")},
-            {Acdb::MapIconType::Business, getJEnumValue(env, mapIconTypeName, "BUSINESS")},
-            {Acdb::MapIconType::Dam, getJEnumValue(env, mapIconTypeName, "DAM")},
-            {Acdb::MapIconType::Ferry, getJEnumValue(env, mapIconTypeName, "FERRY")},
-            {Acdb::MapIconType::Hazard, getJEnumValue(env, mapIconTypeName, "HAZARD")},
-            {Acdb::MapIconType::Inlet, getJEnumValue(env, mapIconTypeName, "INLET")},
-            {Acdb::MapIconType::Lock, getJEnumValue(env, mapIconTypeName, "LOCK")},
-            {Acdb::MapIconType::Marina, getJEnumValue(env, mapIconTypeName, "MARINA")},
-            {Acdb::MapIconType::AnchorageSponsor, getJEnumValue(env, mapIconTypeName, "ANCHORAGE_SPONSOR")},
-            {Acdb::MapIconType::BusinessSponsor, getJEnumValue(env, mapIconTypeName, "BUSINESS_SPONSOR")},
-            {Acdb::MapIconType::MarinaSponsor, getJEnumValue(env, mapIconTypeName, "MARINA_SPONSOR")}
-        };
+    jobjectArray Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_getSearchMarkers(JNIEnv* env, jclass clazz, jlong ptr, jstring nameJstr, jdouble south, jdouble west, jdouble north, jdouble east, jint maxResultCount, jboolean escapeHtml) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        ReadLease connection{holder};
+
+        std::string nameStr = getString(env, clazz, nameJstr);
+
+        std::vector<Acdb::ISearchMarkerPtr> searchMarkers;
+        findSearchMarkers(*connection->dataService, nameStr, south, west, north, east, maxResultCount, searchMarkers);
+
+        jobjectArray results = env->NewObjectArray(searchMarkers.size(), jniCache.searchMarkerClass, nullptr);
+
+        const std::map<ACDB_type_type, jobject>& MARKER_TYPES = jniCache.markerTypes;
+        const std::map<Acdb::MapIconType, jobject>& MAP_ICON_TYPES = jniCache.mapIconTypes;
 
         for(std::size_t i = 0; i < searchMarkers.size(); i++)
         {
@@ -364,49 +1377,167 @@ jobject Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_g
                 iconIt = MAP_ICON_TYPES.begin();
             }
 
-            jobject result = env->NewObject(clazz, initMethodId, searchMarkers[i]->GetId(), env->NewStringUTF(markerName.c_str()), markerIt->second, searchMarkers[i]->GetPosition().lat * UTL_SEMI_TO_DEG, searchMarkers[i]->GetPosition().lon * UTL_SEMI_TO_DEG, iconIt->second);
+            jstring markerNameJstr = env->NewStringUTF(markerName.c_str());
+            jobject result = env->NewObject(jniCache.searchMarkerClass, jniCache.searchMarkerInitMethodId, searchMarkers[i]->GetId(), markerNameJstr, markerIt->second, searchMarkers[i]->GetPosition().lat * UTL_SEMI_TO_DEG, searchMarkers[i]->GetPosition().lon * UTL_SEMI_TO_DEG, iconIt->second);
             env->SetObjectArrayElement(results, i, result);
+
+            env->DeleteLocalRef(result);
+            env->DeleteLocalRef(markerNameJstr);
         }
 
         return results;
     }
 
-    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_setHeadContent(JNIEnv* env, jobject obj, jstring headContentJstr) {
-        SmartPointerHolder* holder = (SmartPointerHolder*) env->GetLongField(obj, getPtrFieldId(env, obj));
+    jint Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_getSearchMarkersPacked(JNIEnv* env, jclass clazz, jlong ptr, jstring nameJstr, jdouble south, jdouble west, jdouble north, jdouble east, jint maxResultCount, jboolean escapeHtml, jobject resultBuffer) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        ReadLease connection{holder};
+
+        std::string nameStr = getString(env, clazz, nameJstr);
+
+        std::vector<Acdb::ISearchMarkerPtr> searchMarkers;
+        findSearchMarkers(*connection->dataService, nameStr, south, west, north, east, maxResultCount, searchMarkers);
+
+        jlongArray markerIdsArray = (jlongArray)env->GetObjectField(resultBuffer, jniCache.searchResultBufferMarkerIdsFieldId);
+        jdoubleArray latitudesArray = (jdoubleArray)env->GetObjectField(resultBuffer, jniCache.searchResultBufferLatitudesFieldId);
+        jdoubleArray longitudesArray = (jdoubleArray)env->GetObjectField(resultBuffer, jniCache.searchResultBufferLongitudesFieldId);
+        jbyteArray markerTypesArray = (jbyteArray)env->GetObjectField(resultBuffer, jniCache.searchResultBufferMarkerTypesFieldId);
+        jbyteArray mapIconsArray = (jbyteArray)env->GetObjectField(resultBuffer, jniCache.searchResultBufferMapIconsFieldId);
+        jintArray nameOffsetsArray = (jintArray)env->GetObjectField(resultBuffer, jniCache.searchResultBufferNameOffsetsFieldId);
+        jbyteArray namesArray = (jbyteArray)env->GetObjectField(resultBuffer, jniCache.searchResultBufferNamesFieldId);
+
+        jsize count = std::min((jsize)searchMarkers.size(), env->GetArrayLength(markerIdsArray));
+
+        // Build each column natively, then copy it to Java in a single call.
+        std::vector<jlong> markerIds(count);
+        std::vector<jdouble> latitudes(count);
+        std::vector<jdouble> longitudes(count);
+        std::vector<jbyte> markerTypes(count);
+        std::vector<jbyte> mapIcons(count);
+        std::vector<jint> nameOffsets(count + 1);
+        std::string names;
+
+        for (jsize i = 0; i < count; i++)
+        {
+            std::string markerName = searchMarkers[i]->GetName();
+            if (escapeHtml == true) {
+                Acdb::String::HtmlEscape(markerName);
+            }
+
+            std::map<ACDB_type_type, jbyte>::const_iterator markerIt = jniCache.markerTypeOrdinals.find(searchMarkers[i]->GetType());
+            if (markerIt == jniCache.markerTypeOrdinals.end())
+            {
+                markerIt = jniCache.markerTypeOrdinals.begin();
+            }
+
+            std::map<Acdb::MapIconType, jbyte>::const_iterator iconIt = jniCache.mapIconTypeOrdinals.find(searchMarkers[i]->GetMapIcon());
+            if (iconIt == jniCache.mapIconTypeOrdinals.end())
+            {
+                iconIt = jniCache.mapIconTypeOrdinals.begin();
+            }
+
+            markerIds[i] = searchMarkers[i]->GetId();
+            latitudes[i] = searchMarkers[i]->GetPosition().lat * UTL_SEMI_TO_DEG;
+            longitudes[i] = searchMarkers[i]->GetPosition().lon * UTL_SEMI_TO_DEG;
+            markerTypes[i] = markerIt->second;
+            mapIcons[i] = iconIt->second;
+            nameOffsets[i] = (jint)names.size();
+            names += markerName;
+        }
+
+        nameOffsets[count] = (jint)names.size();
+
+        if (env->GetArrayLength(namesArray) < (jsize)names.size())
+        {
+            env->DeleteLocalRef(namesArray);
+            namesArray = env->NewByteArray((jsize)names.size() * 2);
+
+            if (!namesArray)
+            {
+                return 0;
+            }
+
+            env->SetObjectField(resultBuffer, jniCache.searchResultBufferNamesFieldId, namesArray);
+        }
+
+        env->SetLongArrayRegion(markerIdsArray, 0, count, markerIds.data());
+        env->SetDoubleArrayRegion(latitudesArray, 0, count, latitudes.data());
+        env->SetDoubleArrayRegion(longitudesArray, 0, count, longitudes.data());
+        env->SetByteArrayRegion(markerTypesArray, 0, count, markerTypes.data());
+        env->SetByteArrayRegion(mapIconsArray, 0, count, mapIcons.data());
+        env->SetIntArrayRegion(nameOffsetsArray, 0, count + 1, nameOffsets.data());
+        env->SetByteArrayRegion(namesArray, 0, (jsize)names.size(), reinterpret_cast<const jbyte*>(names.data()));
+        env->SetIntField(resultBuffer, jniCache.searchResultBufferCountFieldId, count);
+
+        env->DeleteLocalRef(markerIdsArray);
+        env->DeleteLocalRef(latitudesArray);
+        env->DeleteLocalRef(longitudesArray);
+        env->DeleteLocalRef(markerTypesArray);
+        env->DeleteLocalRef(mapIconsArray);
+        env->DeleteLocalRef(nameOffsetsArray);
+        env->DeleteLocalRef(namesArray);
+
+        return count;
+    }
+
+    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_setHeadContent(JNIEnv* env, jclass clazz, jlong ptr, jstring headContentJstr) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLock lock{holder->mutex};
 
-        std::string headContentStr = getString(env, obj, headContentJstr);
-        holder->dataService->SetHeadContent(headContentStr);
+        std::string headContentStr = getString(env, clazz, headContentJstr);
+        forEachDataService(holder, [&](Acdb::IDataService& dataService) {
+            dataService.SetHeadContent(headContentStr);
+        });
     }
 
-    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_setImagePrefix(JNIEnv* env, jobject obj, jstring imagePrefixJstr) {
-        SmartPointerHolder* holder = (SmartPointerHolder*) env->GetLongField(obj, getPtrFieldId(env, obj));
+    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_setImagePrefix(JNIEnv* env, jclass clazz, jlong ptr, jstring imagePrefixJstr) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLock lock{holder->mutex};
 
-        std::string imagePrefixStr = getString(env, obj, imagePrefixJstr);
-        holder->dataService->SetImagePrefix(imagePrefixStr);
+        std::string imagePrefixStr = getString(env, clazz, imagePrefixJstr);
+        forEachDataService(holder, [&](Acdb::IDataService& dataService) {
+            dataService.SetImagePrefix(imagePrefixStr);
+        });
     }
 
-    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_setLanguage(JNIEnv* env, jobject obj, jstring languageCodeJstr) {
-        SmartPointerHolder* holder = (SmartPointerHolder*) env->GetLongField(obj, getPtrFieldId(env, obj));
+    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_setLanguage(JNIEnv* env, jclass clazz, jlong ptr, jstring languageCodeJstr) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLock lock{holder->mutex};
 
-        std::string languageCodeStr = getString(env, obj, languageCodeJstr);
-        holder->dataService->SetLanguage(languageCodeStr);
+        // Reloading translations for the same language is skipped, installs reload them when they
+        // may have changed.
+        std::string languageCodeStr = getString(env, clazz, languageCodeJstr);
+        if (languageCodeStr == holder->languageCode) {
+            return;
+        }
+
+        holder->languageCode = languageCodeStr;
+        reloadLanguage(holder);
     }
 
 
     // ISettingsManager functions
 
-    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_setCoordinateFormat(JNIEnv* env, jobject obj, jobject coordinateFormat) {
-        int value = getEnumValue(env, "com/garmin/marine/activecaptaincommunitysdk/CoordinateFormatType", coordinateFormat);
+    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_setCoordinateFormat(JNIEnv* env, jclass clazz, jlong ptr, jobject coordinateFormat) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLock lock{holder->mutex};
+
+        int value = getEnumValue(env, coordinateFormat);
         Acdb::ISettingsManager::GetISettingsManager().SetCoordinateFormat((ACDB_coord_format_type)value);
     }
 
-    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_setDateFormat(JNIEnv* env, jobject obj, jobject dateFormat) {
-        int value = getEnumValue(env, "com/garmin/marine/activecaptaincommunitysdk/DateFormatType", dateFormat);
+    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_setDateFormat(JNIEnv* env, jclass clazz, jlong ptr, jobject dateFormat) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLock lock{holder->mutex};
+
+        int value = getEnumValue(env, dateFormat);
         Acdb::ISettingsManager::GetISettingsManager().SetDateFormat((ACDB_date_format_type)value);
     }
 
-    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_setDistanceUnit(JNIEnv* env, jobject obj, jobject distanceUnit) {
-        int value = getEnumValue(env, "com/garmin/marine/activecaptaincommunitysdk/DistanceUnit", distanceUnit);
+    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_setDistanceUnit(JNIEnv* env, jclass clazz, jlong ptr, jobject distanceUnit) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLock lock{holder->mutex};
+
+        int value = getEnumValue(env, distanceUnit);
 
         const std::map<int, ACDB_unit_type> DISTANCE_UNITS{
             {0, ACDB_UNKNOWN_UNIT},
@@ -426,159 +1557,227 @@ jobject Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_g
 
     // UpdateService functions
 
-    jlong Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_processCreateMarkerResponse(JNIEnv* env, jobject obj, jstring jsonJstr) {
-        SmartPointerHolder* holder = (SmartPointerHolder*) env->GetLongField(obj, getPtrFieldId(env, obj));
+    jlong Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_processCreateMarkerResponse(JNIEnv* env, jclass clazz, jlong ptr, jstring jsonJstr) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLease lease{holder};
 
-        std::string jsonStr = getString(env, obj, jsonJstr);
+        std::string jsonStr = getString(env, clazz, jsonJstr);
         ACDB_marker_idx_type markerIdx;
         holder->updateService->ProcessCreateMarkerResponse(jsonStr, markerIdx);
 
         return (jlong)markerIdx;
     }
 
-    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_processMoveMarkerResponse(JNIEnv* env, jobject obj, jstring jsonJstr) {
-        SmartPointerHolder* holder = (SmartPointerHolder*) env->GetLongField(obj, getPtrFieldId(env, obj));
+    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_processMoveMarkerResponse(JNIEnv* env, jclass clazz, jlong ptr, jstring jsonJstr) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLease lease{holder};
 
-        std::string jsonStr = getString(env, obj, jsonJstr);
+        std::string jsonStr = getString(env, clazz, jsonJstr);
         holder->updateService->ProcessMoveMarkerResponse(jsonStr);
     }
 
-    jint Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_processSyncMarkersResponse(JNIEnv* env, jobject obj, jstring jsonJstr, jint tileX, jint tileY) {
-        SmartPointerHolder* holder = (SmartPointerHolder*) env->GetLongField(obj, getPtrFieldId(env, obj));
+    jint Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_processSyncMarkersResponse(JNIEnv* env, jclass clazz, jlong ptr, jstring jsonJstr, jint tileX, jint tileY) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLease lease{holder};
 
         std::size_t resultCount;
 
-        std::string jsonStr = getString(env, obj, jsonJstr);
+        std::string jsonStr = getString(env, clazz, jsonJstr);
         Acdb::TileXY tileXY{tileX, tileY};
         holder->updateService->ProcessSyncMarkersResponse(jsonStr, tileXY, resultCount);
 
         return resultCount;
     }
 
-    jint Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_processSyncReviewsResponse(JNIEnv* env, jobject obj, jstring jsonJstr, jint tileX, jint tileY) {
-        SmartPointerHolder* holder = (SmartPointerHolder*) env->GetLongField(obj, getPtrFieldId(env, obj));
+    jint Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_processSyncReviewsResponse(JNIEnv* env, jclass clazz, jlong ptr, jstring jsonJstr, jint tileX, jint tileY) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLease lease{holder};
 
         std::size_t resultCount;
 
-        std::string jsonStr = getString(env, obj, jsonJstr);
+        std::string jsonStr = getString(env, clazz, jsonJstr);
         Acdb::TileXY tileXY{tileX, tileY};
         holder->updateService->ProcessSyncReviewsResponse(jsonStr, tileXY, resultCount);
 
         return resultCount;
     }
 
-    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_processVoteForReviewResponse(JNIEnv* env, jobject obj, jstring jsonJstr) {
-        SmartPointerHolder* holder = (SmartPointerHolder*) env->GetLongField(obj, getPtrFieldId(env, obj));
+    jint Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_processSyncMarkersResponseBytes(JNIEnv* env, jclass clazz, jlong ptr, jbyteArray jsonBytes, jint offset, jint length, jint tileX, jint tileY) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLease lease{holder};
 
-        std::string jsonStr = getString(env, obj, jsonJstr);
-        holder->updateService->ProcessVoteForReviewResponse(jsonStr);
+        std::size_t resultCount;
+
+        std::string jsonStr = getString(env, jsonBytes, offset, length);
+        Acdb::TileXY tileXY{tileX, tileY};
+        holder->updateService->ProcessSyncMarkersResponse(jsonStr, tileXY, resultCount);
+
+        return resultCount;
     }
 
-    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_processWebViewResponse(JNIEnv* env, jobject obj, jstring jsonJstr) {
-        SmartPointerHolder* holder = (SmartPointerHolder*) env->GetLongField(obj, getPtrFieldId(env, obj));
+    jint Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_processSyncMarkersResponseDirect(JNIEnv* env, jclass clazz, jlong ptr, jobject jsonBuffer, jint offset, jint length, jint tileX, jint tileY) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLease lease{holder};
 
-        std::string jsonStr = getString(env, obj, jsonJstr);
-        holder->updateService->ProcessWebViewResponse(jsonStr);
+        std::size_t resultCount;
+
+        std::string jsonStr = getDirectBufferString(env, jsonBuffer, offset, length);
+        Acdb::TileXY tileXY{tileX, tileY};
+        holder->updateService->ProcessSyncMarkersResponse(jsonStr, tileXY, resultCount);
+
+        return resultCount;
     }
 
+    jint Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_processSyncReviewsResponseBytes(JNIEnv* env, jclass clazz, jlong ptr, jbyteArray jsonBytes, jint offset, jint length, jint tileX, jint tileY) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLease lease{holder};
 
-    // AcdbUrlAction
+        std::size_t resultCount;
 
-    jobject Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_parseAcdbUrl(JNIEnv* env, jobject obj, jstring urlJstr, jstring captainNameJstr, jint pageSize) {
-        SmartPointerHolder* holder = (SmartPointerHolder*) env->GetLongField(obj, getPtrFieldId(env, obj));
+        std::string jsonStr = getString(env, jsonBytes, offset, length);
+        Acdb::TileXY tileXY{tileX, tileY};
+        holder->updateService->ProcessSyncReviewsResponse(jsonStr, tileXY, resultCount);
 
-        std::string captainNameStr = getString(env, obj, captainNameJstr);
-        std::string urlStr = getString(env, obj, urlJstr);
-        Acdb::AcdbUrlActionPtr action;
-        std::string contentStr;
-        jobject jActionType = getJEnumValue(env, "com/garmin/marine/activecaptaincommunitysdk/DTO/AcdbUrlAction$ActionType", "UNKNOWN");
+        return resultCount;
+    }
 
-        jclass clazz = env->FindClass(
-                "com/garmin/marine/activecaptaincommunitysdk/DTO/AcdbUrlAction");
+    jint Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_processSyncReviewsResponseDirect(JNIEnv* env, jclass clazz, jlong ptr, jobject jsonBuffer, jint offset, jint length, jint tileX, jint tileY) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLease lease{holder};
 
-        if (!clazz)
-        {
-            return nullptr;
-        }
+        std::size_t resultCount;
+
+        std::string jsonStr = getDirectBufferString(env, jsonBuffer, offset, length);
+        Acdb::TileXY tileXY{tileX, tileY};
+        holder->updateService->ProcessSyncReviewsResponse(jsonStr, tileXY, resultCount);
+
+        return resultCount;
+    }
 
-        jmethodID initMethodId = env->GetMethodID(clazz, "<init>",
-                                                  "(Lcom/garmin/marine/activecaptaincommunitysdk/DTO/AcdbUrlAction$ActionType;Ljava/lang/String;)V");
+    jobject Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_processSyncPageBytes(JNIEnv* env, jclass clazz, jlong ptr, jbyteArray jsonBytes, jint offset, jint length, jint tileX, jint tileY, jboolean reviews) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLease lease{holder};
 
-        if (!initMethodId)
-        {
-            return nullptr;
+        std::size_t resultCount;
+
+        std::string jsonStr = getString(env, jsonBytes, offset, length);
+        Acdb::TileXY tileXY{tileX, tileY};
+        if (reviews == true) {
+            holder->updateService->ProcessSyncReviewsResponse(jsonStr, tileXY, resultCount);
+        } else {
+            holder->updateService->ProcessSyncMarkersResponse(jsonStr, tileXY, resultCount);
         }
 
-        if (Acdb::ParseAcdbUrl(urlStr, action))
-        {
-            switch (action->GetAction())
-            {
-                case Acdb::AcdbUrlAction::ActionType::SeeAll:
-                {
-                    jActionType = getJEnumValue(env, "com/garmin/marine/activecaptaincommunitysdk/DTO/AcdbUrlAction$ActionType", "SEE_ALL");
+        // Read the next page's cursor on the writer connection, while still holding the write
+        // lease, so it reflects exactly this page.
+        Acdb::LastUpdateInfoType lastUpdateInfo;
+        holder->writer.repository->GetTileLastUpdateInfo(tileXY, lastUpdateInfo);
+        uint64_t lastModified = (reviews == true) ? lastUpdateInfo.mUserReviewLastUpdate : lastUpdateInfo.mMarkerLastUpdate;
+
+        return env->NewObject(jniCache.syncPageResultClass, jniCache.syncPageResultInitMethodId, (jint)resultCount, (jlong)lastModified * 1000);
+    }
 
-                    Acdb::SeeAllAction* seeAllAction = static_cast<Acdb::SeeAllAction*>(action.get());
+    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_beginDeferredSync(JNIEnv* env, jclass clazz, jlong ptr) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLease lease{holder};
 
-                    if (Acdb::IsReviewsSection(seeAllAction->GetSection())) {
-                        contentStr = holder->dataService->GetReviewListHtml(seeAllAction->GetMarkerId(), seeAllAction->GetPageNumber(), pageSize, captainNameStr);
-                    } else {
-                        contentStr = holder->dataService->GetSectionPageHtml(seeAllAction->GetMarkerId(), seeAllAction->GetSection());
-                    }
+        // Without read connections, the write lease holds mutex exclusively, so the writer
+        // connection is idle if the journal mode changes.
+        holder->syncDeferred = true;
+        applyDeferredSync(holder);
+    }
 
-                    break;
-                }
-                case Acdb::AcdbUrlAction::ActionType::ShowPhotos:
-                {
-                    jActionType = getJEnumValue(env, "com/garmin/marine/activecaptaincommunitysdk/DTO/AcdbUrlAction$ActionType", "SHOW_PHOTOS");
+    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_endDeferredSync(JNIEnv* env, jclass clazz, jlong ptr) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLease lease{holder};
 
-                    Acdb::ShowPhotosAction* showPhotosAction = static_cast<Acdb::ShowPhotosAction*>(action.get());
-                    contentStr = holder->dataService->GetBusinessPhotoListHtml(showPhotosAction->GetMarkerId());
+        if (holder->writerDb != nullptr && !holder->savedSynchronous.empty()) {
+            setPragma(holder->writerDb, "synchronous", holder->savedSynchronous);
+        }
 
-                    break;
-                }
-                case Acdb::AcdbUrlAction::ActionType::ShowSummary:
-                {
-                    jActionType = getJEnumValue(env, "com/garmin/marine/activecaptaincommunitysdk/DTO/AcdbUrlAction$ActionType", "SHOW_SUMMARY");
+        checkpointWriteAheadLog(holder->databasePath);
 
-                    Acdb::ShowSummaryAction* showSummaryAction = static_cast<Acdb::ShowSummaryAction*>(action.get());
-                    contentStr = holder->dataService->GetPresentationMarkerHtml(showSummaryAction->GetMarkerId(), captainNameStr);
+        if (holder->writerDb != nullptr && !holder->savedJournalMode.empty()) {
+            setPragma(holder->writerDb, "journal_mode", holder->savedJournalMode);
+        }
 
-                    break;
-                }
-                case Acdb::AcdbUrlAction::ActionType::Edit:
-                {
-                    jActionType = getJEnumValue(env, "com/garmin/marine/activecaptaincommunitysdk/DTO/AcdbUrlAction$ActionType", "EDIT");
+        holder->syncDeferred = false;
+        holder->savedSynchronous.clear();
+        holder->savedJournalMode.clear();
+    }
 
-                    Acdb::EditAction* editAction = static_cast<Acdb::EditAction*>(action.get());
-                    contentStr = editAction->GetUrl();
+    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_processVoteForReviewResponse(JNIEnv* env, jclass clazz, jlong ptr, jstring jsonJstr) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLease lease{holder};
 
-                    break;
-                }
-                case Acdb::AcdbUrlAction::ActionType::ReportReview:
-                {
-                    jActionType = getJEnumValue(env, "com/garmin/marine/activecaptaincommunitysdk/DTO/AcdbUrlAction$ActionType", "REPORT_REVIEW");
+        std::string jsonStr = getString(env, clazz, jsonJstr);
+        holder->updateService->ProcessVoteForReviewResponse(jsonStr);
+    }
 
-                    Acdb::ReportReviewAction* reportReviewAction = static_cast<Acdb::ReportReviewAction*>(action.get());
-                    contentStr = reportReviewAction->GetUrl();
+    void Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_processWebViewResponse(JNIEnv* env, jclass clazz, jlong ptr, jstring jsonJstr) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        WriteLease lease{holder};
 
-                    break;
-                }
-                case Acdb::AcdbUrlAction::ActionType::VoteReview:
-                {
-                    jActionType = getJEnumValue(env, "com/garmin/marine/activecaptaincommunitysdk/DTO/AcdbUrlAction$ActionType", "VOTE_REVIEW");
+        std::string jsonStr = getString(env, clazz, jsonJstr);
+        holder->updateService->ProcessWebViewResponse(jsonStr);
+    }
 
-                    Acdb::VoteReviewAction* voteAction = static_cast<Acdb::VoteReviewAction*>(action.get());
-                    contentStr = std::to_string(voteAction->GetReviewId());
 
-                    break;
-                }
+    // AcdbUrlAction
+
+    jobject Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_getAcdbUrlActionType(JNIEnv* env, jclass clazz, jstring urlJstr) {
+        std::string urlStr = getString(env, clazz, urlJstr);
+        Acdb::AcdbUrlActionPtr action;
+
+        if (Acdb::ParseAcdbUrl(urlStr, action))
+        {
+            std::map<Acdb::AcdbUrlAction::ActionType, jobject>::const_iterator actionIt = jniCache.actionTypes.find(action->GetAction());
+            if (actionIt != jniCache.actionTypes.end())
+            {
+                return actionIt->second;
             }
         }
 
+        return jniCache.unknownActionType;
+    }
+
+    jobject Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_parseAcdbUrl(JNIEnv* env, jclass clazz, jlong ptr, jstring urlJstr, jstring captainNameJstr, jint pageSize) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        ReadLease connection{holder};
+
+        std::string captainNameStr = getString(env, clazz, captainNameJstr);
+        std::string urlStr = getString(env, clazz, urlJstr);
+        std::string contentStr;
+        bool isHtml;
+
+        jobject jActionType = renderAcdbUrl(*connection->dataService, urlStr, captainNameStr, pageSize, contentStr, isHtml);
+
         if (!contentStr.empty()) {
-            return env->NewObject(clazz, initMethodId, jActionType, env->NewStringUTF(contentStr.c_str()));
+            jstring contentJstr = isHtml ? newStringUtf8(env, contentStr) : env->NewStringUTF(contentStr.c_str());
+            return env->NewObject(jniCache.acdbUrlActionClass, jniCache.acdbUrlActionInitMethodId, jActionType, contentJstr);
         } else {
             return nullptr;
         }
     }
-}
\ No newline at end of file
+
+    jobject Java_com_garmin_marine_activecaptaincommunitysdk_ActiveCaptainDatabase_parseAcdbUrlUtf8(JNIEnv* env, jclass clazz, jlong ptr, jstring urlJstr, jstring captainNameJstr, jint pageSize) {
+        SmartPointerHolder* holder = (SmartPointerHolder*) ptr;
+        ReadLease connection{holder};
+
+        std::string captainNameStr = getString(env, clazz, captainNameJstr);
+        std::string urlStr = getString(env, clazz, urlJstr);
+        std::string contentStr;
+        bool isHtml;
+
+        jobject jActionType = renderAcdbUrl(*connection->dataService, urlStr, captainNameStr, pageSize, contentStr, isHtml);
+
+        if (contentStr.empty()) {
+            return nullptr;
+        } else if (isHtml) {
+            return env->NewObject(jniCache.acdbUrlActionClass, jniCache.acdbUrlActionBytesInitMethodId, jActionType, newByteArray(env, contentStr));
+        } else {
+            return env->NewObject(jniCache.acdbUrlActionClass, jniCache.acdbUrlActionInitMethodId, jActionType, env->NewStringUTF(contentStr.c_str()));
+        }
+    }
+
+}
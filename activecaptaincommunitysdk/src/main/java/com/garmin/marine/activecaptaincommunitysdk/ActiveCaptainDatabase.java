@@ -22,37 +22,148 @@ import com.garmin.marine.activecaptaincommunitysdk.DTO.DateFormatType;
 import com.garmin.marine.activecaptaincommunitysdk.DTO.DistanceUnit;
 import com.garmin.marine.activecaptaincommunitysdk.DTO.LastUpdateInfoType;
 import com.garmin.marine.activecaptaincommunitysdk.DTO.SearchMarker;
+import com.garmin.marine.activecaptaincommunitysdk.DTO.SearchResultBuffer;
+import com.garmin.marine.activecaptaincommunitysdk.DTO.SyncPageResult;
+import com.garmin.marine.activecaptaincommunitysdk.DTO.TileGrid;
+import com.garmin.marine.activecaptaincommunitysdk.DTO.TileInstallStats;
+import com.garmin.marine.activecaptaincommunitysdk.DTO.TileLastModifiedList;
 import com.garmin.marine.activecaptaincommunitysdk.DTO.TileXY;
 
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * ActiveCaptain Community database.
+ * <p>
+ * All methods are thread-safe.  Searches, tile queries and parseAcdbUrl calls run concurrently
+ * with each other.  Methods that write to the database (install, delete and process*Response) run
+ * one at a time.  When the database is opened with read connections, reads continue while a
+ * write is in progress; otherwise writes block reads until they complete.  Methods that change
+ * rendering settings wait for calls in progress to complete, and block other calls while they run.
+ * <p>
+ * Pages rendered by parseAcdbUrl are cached until the next write or rendering setting change, see
+ * {@link #setRenderCacheSize(int)}.
+ * <p>
+ * Methods ending in Async run the call on the executor set by {@link #setExecutor(Executor)} and
+ * return a Future, which can be cancelled so a superseded call is dropped before it starts.
+ * <p>
+ * {@link #close()} waits for calls in progress to complete before releasing native resources, and
+ * may be called more than once.  Calling any other method after close throws
+ * IllegalStateException.
+ */
 public class ActiveCaptainDatabase implements Closeable {
+    // Calls hold the read lock while using the native handle, close() takes the write lock to
+    // release it.  Native code has its own lock to order reads and writes.
+    private final ReentrantReadWriteLock handleLock = new ReentrantReadWriteLock();
     private long ptrHolder = 0;
 
-    private native void init(String databasePath, String language);
-    private native void cleanup();
+    private final Object executorLock = new Object();
+    private final int asyncThreadCount;
+    private Executor executor = null;
+    private ExecutorService ownedExecutor = null;
+    private boolean closed = false;
+
+    // Prefetches run on their own low priority thread, and wait while foreground renders run.
+    private ExecutorService prefetchExecutor = null;
+    private final AtomicLong prefetchGeneration = new AtomicLong();
+    private final Object foregroundRenderLock = new Object();
+    private int foregroundRenderCount = 0;
+
+    private static final int DEFAULT_RENDER_CACHE_SIZE = 16;
+    private final RenderCache renderCache = new RenderCache(DEFAULT_RENDER_CACHE_SIZE);
+
+    private final Object deferredSyncLock = new Object();
+    private int deferredSyncDepth = 0;
+
+    private static native long init(String databasePath, String language, int readConnectionCount);
+    private static native void cleanup(long ptr);
+    private static native void deleteDatabase(long ptr);
+    private static native void deleteTile(long ptr, int tileX, int tileY);
+    private static native void deleteTileReviews(long ptr, int tileX, int tileY);
+    private static native LastUpdateInfoType getTileLastModified(long ptr, int tileX, int tileY);
+    private static native HashMap<TileXY, LastUpdateInfoType> getTilesLastModifiedByBoundingBox(long ptr, double south, double west, double north, double east);
+    private static native TileLastModifiedList getTilesLastModified(long ptr, double[] boxes);
+    private static native String getVersion(long ptr);
+    private static native TileInstallStats installTile(long ptr, String path, int tileX, int tileY);
+    private static native TileInstallStats installCompressedTile(long ptr, String gzipPath, int tileX, int tileY);
+    private static native TileInstallStats[] installTiles(long ptr, String[] paths, int[] tileX, int[] tileY, boolean compressed);
+    private static native SearchMarker[] getSearchMarkers(long ptr, String name, double south, double west, double north, double east, int maxResultCount, boolean escapeHtml);
+    private static native int getSearchMarkersPacked(long ptr, String name, double south, double west, double north, double east, int maxResultCount, boolean escapeHtml, SearchResultBuffer results);
+    private static native void setHeadContent(long ptr, String headContent);
+    private static native void setImagePrefix(long ptr, String imagePrefix);
+    private static native void setLanguage(long ptr, String languageCode);
+    private static native void setCoordinateFormat(long ptr, CoordinateFormatType coordinateFormat);
+    private static native void setDateFormat(long ptr, DateFormatType dateFormat);
+    private static native void setDistanceUnit(long ptr, DistanceUnit distanceUnit);
+    private static native long processCreateMarkerResponse(long ptr, String json);
+    private static native void processMoveMarkerResponse(long ptr, String json);
+    private static native int processSyncMarkersResponse(long ptr, String json, int tileX, int tileY);
+    private static native int processSyncMarkersResponseBytes(long ptr, byte[] json, int offset, int length, int tileX, int tileY);
+    private static native int processSyncMarkersResponseDirect(long ptr, ByteBuffer json, int offset, int length, int tileX, int tileY);
+    private static native int processSyncReviewsResponse(long ptr, String json, int tileX, int tileY);
+    private static native int processSyncReviewsResponseBytes(long ptr, byte[] json, int offset, int length, int tileX, int tileY);
+    private static native int processSyncReviewsResponseDirect(long ptr, ByteBuffer json, int offset, int length, int tileX, int tileY);
+    private static native SyncPageResult processSyncPageBytes(long ptr, byte[] json, int offset, int length, int tileX, int tileY, boolean reviews);
+    private static native void beginDeferredSync(long ptr);
+    private static native void endDeferredSync(long ptr);
+    private static native void processVoteForReviewResponse(long ptr, String json);
+    private static native void processWebViewResponse(long ptr, String json);
+    private static native AcdbUrlAction.ActionType getAcdbUrlActionType(String url);
+    private static native AcdbUrlAction parseAcdbUrl(long ptr, String url, String captainName, int pageSize);
+    private static native AcdbUrlAction parseAcdbUrlUtf8(long ptr, String url, String captainName, int pageSize);
 
     /**
      * Delete the SQLite database.
      */
-    public native void deleteDatabase();
+    public void deleteDatabase() {
+        long ptr = acquireHandle();
+        try {
+            deleteDatabase(ptr);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
 
     /**
      * Delete markers and reviews for the specified tile from the SQLite database.
      * @param tileX tile X coordinate, valid values are 0-15
      * @param tileY tile Y coordinate, valid values are 0-15
      */
-    public native void deleteTile(int tileX, int tileY);
+    public void deleteTile(int tileX, int tileY) {
+        long ptr = acquireHandle();
+        try {
+            deleteTile(ptr, tileX, tileY);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
 
     /**
      * Delete reviews for the specified tile from the SQLite database.
      * @param tileX tile X coordinate, valid values are 0-15
      * @param tileY tile Y coordinate, valid values are 0-15
      */
-    public native void deleteTileReviews(int tileX, int tileY);
+    public void deleteTileReviews(int tileX, int tileY) {
+        long ptr = acquireHandle();
+        try {
+            deleteTileReviews(ptr, tileX, tileY);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
 
     /**
      * Retrieve marker and review last modified values for the specified tile.
@@ -60,7 +171,14 @@ public class ActiveCaptainDatabase implements Closeable {
      * @param tileY tile Y coordinate, valid values are 0-15
      * @return LastUpdateInfoType with marker and review last modified values initialized.
      */
-    public native LastUpdateInfoType getTileLastModified(int tileX, int tileY);
+    public LastUpdateInfoType getTileLastModified(int tileX, int tileY) {
+        long ptr = acquireHandle();
+        try {
+            return getTileLastModified(ptr, tileX, tileY);
+        } finally {
+            releaseHandle();
+        }
+    }
 
     /**
      * Retrieve tile coordinates and marker/review last modified values for tiles overlapped by the specified bounding box.
@@ -69,22 +187,168 @@ public class ActiveCaptainDatabase implements Closeable {
      * @param north longitude of northern edge of bounding box
      * @param east latitude of eastern edge of bounding box
      * @return hash map of LastUpdateInfoType objects by TileXY
+     * @deprecated use {@link #getTilesLastModifiedGrid(double, double, double, double)}, or
+     * {@link #getTilesLastModified(double[])} for the times as numbers.
+     */
+    @Deprecated
+    public HashMap<TileXY, LastUpdateInfoType> getTilesLastModifiedByBoundingBox(double south, double west, double north, double east) {
+        long ptr = acquireHandle();
+        try {
+            return getTilesLastModifiedByBoundingBox(ptr, south, west, north, east);
+        } finally {
+            releaseHandle();
+        }
+    }
+
+    /**
+     * Retrieve marker/review last modified values for tiles overlapped by the specified bounding box.
+     * @param south latitude of southern edge of bounding box
+     * @param west longitude of western edge of bounding box
+     * @param north latitude of northern edge of bounding box
+     * @param east longitude of eastern edge of bounding box
+     * @return LastUpdateInfoType of each overlapped tile, empty if the database is not present
+     */
+    public TileGrid<LastUpdateInfoType> getTilesLastModifiedGrid(double south, double west, double north, double east) {
+        TileLastModifiedList lastModifiedList = getTilesLastModified(new double[]{south, west, north, east});
+
+        TileGrid<LastUpdateInfoType> result = new TileGrid<>();
+        for (int i = 0; i < lastModifiedList.count; i++) {
+            result.put(lastModifiedList.tileX[i], lastModifiedList.tileY[i], new LastUpdateInfoType(
+                    formatLastModified(lastModifiedList.markerLastModified[i]),
+                    formatLastModified(lastModifiedList.reviewLastModified[i])));
+        }
+
+        return result;
+    }
+
+    /**
+     * Retrieve tile coordinates and marker/review last modified times for tiles overlapped by any
+     * of the specified bounding boxes, in a single call.  Tiles overlapped by several boxes are
+     * only returned once.
+     * @param boxes bounding boxes, four values per box: south latitude, west longitude, north
+     *              latitude, east longitude
+     * @return last modified times of the overlapped tiles, empty if the database is not present
+     */
+    public TileLastModifiedList getTilesLastModified(double[] boxes) {
+        if (boxes == null)
+        {
+            throw new IllegalArgumentException("boxes must not be null.");
+        }
+
+        if (boxes.length % 4 != 0)
+        {
+            throw new IllegalArgumentException("boxes must contain four values per bounding box.");
+        }
+
+        long ptr = acquireHandle();
+        try {
+            return getTilesLastModified(ptr, boxes);
+        } finally {
+            releaseHandle();
+        }
+    }
+
+    /**
+     * Format a last modified time from a TileLastModifiedList as expected by the
+     * api/v2/points-of-interest/sync, api/v2/reviews/sync and sync-status endpoints.
+     * @param epochMillis milliseconds since the Unix epoch
+     * @return formatted time, null if epochMillis is 0
      */
-    public native HashMap<TileXY, LastUpdateInfoType> getTilesLastModifiedByBoundingBox(double south, double west, double north, double east);
+    public static native String formatLastModified(long epochMillis);
 
     /**
      * Get database version
      * @return String containing database version.  If SQLite database is present, will be 2.x.x.x.  If not, will be 0.0.0.0.
      */
-    public native String getVersion();
+    public String getVersion() {
+        long ptr = acquireHandle();
+        try {
+            return getVersion(ptr);
+        } finally {
+            releaseHandle();
+        }
+    }
 
     /**
      * Install specified tile in SQLite database.  May overwrite or merged into the existing database.
      * @param path path to the SQLite file to install
      * @param tileX tile X coordinate, valid values are 0-15
      * @param tileY tile Y coordinate, valid values are 0-15
+     * @return rows changed and time taken, or null if the tile could not be installed
      */
-    public native void installTile(String path, int tileX, int tileY);
+    public TileInstallStats installTile(String path, int tileX, int tileY) {
+        long ptr = acquireHandle();
+        try {
+            return installTile(ptr, path, tileX, tileY);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
+
+    /**
+     * Install specified tile from a gzip-compressed SQLite file, such as an export downloaded from
+     * the API.  The file is inflated into a scratch file next to the database, which is deleted
+     * once the tile is installed, so callers do not need to decompress it themselves.
+     * @param gzipPath path to the gzip-compressed SQLite file to install
+     * @param tileX tile X coordinate, valid values are 0-15
+     * @param tileY tile Y coordinate, valid values are 0-15
+     * @return rows changed and time taken
+     * @throws IOException if the file cannot be read, is not valid gzip data or could not be installed
+     */
+    public TileInstallStats installCompressedTile(String gzipPath, int tileX, int tileY) throws IOException {
+        if (gzipPath == null)
+        {
+            throw new IllegalArgumentException("gzipPath must not be null.");
+        }
+
+        TileInstallStats stats;
+
+        long ptr = acquireHandle();
+        try {
+            stats = installCompressedTile(ptr, gzipPath, tileX, tileY);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+
+        if (stats == null) {
+            throw new IOException("Failed to install tile " + tileX + " " + tileY + ": " + gzipPath);
+        }
+
+        return stats;
+    }
+
+    /**
+     * Install several tiles as a single update.  The tiles are merged into a copy of the database,
+     * which then replaces it, so reads continue while the tiles are merged and see either none or
+     * all of them.  If any tile fails to install, or the process dies before the copy replaces the
+     * database, the database is left as it was.  Other writes wait until the batch completes.
+     * <p>
+     * A single tile is installed in place, like {@link #installTile(String, int, int)}.  A batch
+     * fails without changing the database if there is not enough free space for the copy.
+     * @param paths paths to the SQLite files to install
+     * @param tileX tile X coordinate of each file, valid values are 0-15
+     * @param tileY tile Y coordinate of each file, valid values are 0-15
+     * @return rows changed and time taken, for each tile in the same order
+     * @throws IOException if the batch could not be installed, including for lack of space
+     */
+    public TileInstallStats[] installTiles(String[] paths, int[] tileX, int[] tileY) throws IOException {
+        return installTileBatch(paths, tileX, tileY, false);
+    }
+
+    /**
+     * Version of {@link #installTiles(String[], int[], int[])} for gzip-compressed SQLite files,
+     * see {@link #installCompressedTile(String, int, int)}.
+     * @param gzipPaths paths to the gzip-compressed SQLite files to install
+     * @param tileX tile X coordinate of each file, valid values are 0-15
+     * @param tileY tile Y coordinate of each file, valid values are 0-15
+     * @return rows changed and time taken, for each tile in the same order
+     * @throws IOException if the batch could not be installed
+     */
+    public TileInstallStats[] installCompressedTiles(String[] gzipPaths, int[] tileX, int[] tileY) throws IOException {
+        return installTileBatch(gzipPaths, tileX, tileY, true);
+    }
 
     /**
      * Search for markers in the given bounding box.
@@ -97,13 +361,60 @@ public class ActiveCaptainDatabase implements Closeable {
      * @param escapeHtml HTML-escape the resulting POI names
      * @return Array of SearchMarkers in the given bounding box (matching name, if specified)
      */
-    public native SearchMarker[] getSearchMarkers(String name, double south, double west, double north, double east, int maxResultCount, boolean escapeHtml);
+    public SearchMarker[] getSearchMarkers(String name, double south, double west, double north, double east, int maxResultCount, boolean escapeHtml) {
+        long ptr = acquireHandle();
+        try {
+            return getSearchMarkers(ptr, name, south, west, north, east, maxResultCount, escapeHtml);
+        } finally {
+            releaseHandle();
+        }
+    }
+
+    /**
+     * Search for markers in the given bounding box, writing results into a reusable buffer.
+     * <p>
+     * Unlike {@link #getSearchMarkers(String, double, double, double, double, int, boolean)}, no
+     * per-result objects are created.  When the same buffer is reused for repeated queries,
+     * nothing is allocated once it has grown to fit the largest result set.
+     * @param name name to search for, may be null or empty string
+     * @param south longitude of southern edge of bounding box
+     * @param west latitude of western edge of bounding box
+     * @param north longitude of northern edge of bounding box
+     * @param east latitude of eastern edge of bounding box
+     * @param maxResultCount maximum number of results to return
+     * @param escapeHtml HTML-escape the resulting POI names
+     * @param results buffer to write results into, previous content is overwritten
+     * @return number of results written, also stored in results.count
+     */
+    public int getSearchMarkers(String name, double south, double west, double north, double east, int maxResultCount, boolean escapeHtml, SearchResultBuffer results) {
+        if (results == null)
+        {
+            throw new IllegalArgumentException("results must not be null.");
+        }
+
+        results.ensureCapacity(maxResultCount);
+
+        long ptr = acquireHandle();
+        try {
+            return getSearchMarkersPacked(ptr, name, south, west, north, east, maxResultCount, escapeHtml, results);
+        } finally {
+            releaseHandle();
+        }
+    }
 
     /**
      * Set content of HTML &lt;head&gt; tag to be used in rendered HTML.  If not called, default CSS will be used.
      * @param headContent content of HTML &lt;head&gt; tag, including CSS style values
      */
-    public native void setHeadContent(String headContent);
+    public void setHeadContent(String headContent) {
+        long ptr = acquireHandle();
+        try {
+            setHeadContent(ptr, headContent);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
 
     /**
      * Set prefix to be added to all icon URLs in rendered HTML.  If not called, no prefix will be added.
@@ -113,47 +424,106 @@ public class ActiveCaptainDatabase implements Closeable {
      * assets.
      * @param imagePrefix content of image prefix
      */
-    public native void setImagePrefix(String imagePrefix);
+    public void setImagePrefix(String imagePrefix) {
+        long ptr = acquireHandle();
+        try {
+            setImagePrefix(ptr, imagePrefix);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
 
     /**
      * Set language to use when rendering HTML.
      * <p>
      * American English will be used by default if no translation is available in the specified
      * language.
+     * <p>
+     * Setting the language already in use does nothing.  Translations are reloaded automatically
+     * when tiles are installed, so this does not need to be called again after an install.
      * @param languageCode language code for the desired language.
      */
-    public native void setLanguage(String languageCode);
+    public void setLanguage(String languageCode) {
+        long ptr = acquireHandle();
+        try {
+            setLanguage(ptr, languageCode);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
 
     /**
      * Specify format to render coordinates in.
      * @param coordinateFormat desired coordinate format.
      */
-    public native void setCoordinateFormat(CoordinateFormatType coordinateFormat);
+    public void setCoordinateFormat(CoordinateFormatType coordinateFormat) {
+        long ptr = acquireHandle();
+        try {
+            setCoordinateFormat(ptr, coordinateFormat);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
 
     /**
      * Specify format to render dates in.
      * @param dateFormat desired coordinate format.
      */
-    public native void setDateFormat(DateFormatType dateFormat);
+    public void setDateFormat(DateFormatType dateFormat) {
+        long ptr = acquireHandle();
+        try {
+            setDateFormat(ptr, dateFormat);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
 
     /**
      * Specify units to render distances in.
      * @param distanceUnit desired distance unit.
      */
-    public native void setDistanceUnit(DistanceUnit distanceUnit);
+    public void setDistanceUnit(DistanceUnit distanceUnit) {
+        long ptr = acquireHandle();
+        try {
+            setDistanceUnit(ptr, distanceUnit);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
 
     /**
      * Process response body from POST api/v2/points-of-interest endpoint.  Only call this if API call was successful.
      * @param json response body content
      * @return id of newly created marker
      */
-    public native long processCreateMarkerResponse(String json);
+    public long processCreateMarkerResponse(String json) {
+        long ptr = acquireHandle();
+        try {
+            return processCreateMarkerResponse(ptr, json);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
 
     /**
      * Process response body from PUT api/v2/points-of-interest/{id}/location endpoint.  Only call this if API call was successful.
      * @param json response body content
      */
-    public native void processMoveMarkerResponse(String json);
+    public void processMoveMarkerResponse(String json) {
+        long ptr = acquireHandle();
+        try {
+            processMoveMarkerResponse(ptr, json);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
 
     /**
      * Process response body from GET api/v2/points-of-interest/sync endpoint.  Only call this if API call was successful.
@@ -162,7 +532,59 @@ public class ActiveCaptainDatabase implements Closeable {
      * @param tileY tile Y coordinate, valid values are 0-15
      * @return number of markers processed
      */
-    public native int processSyncMarkersResponse(String json, int tileX, int tileY);
+    public int processSyncMarkersResponse(String json, int tileX, int tileY) {
+        long ptr = acquireHandle();
+        try {
+            return processSyncMarkersResponse(ptr, json, tileX, tileY);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
+
+    /**
+     * Process response body from GET api/v2/points-of-interest/sync endpoint.  Only call this if API call was successful.
+     * <p>
+     * Takes the raw UTF-8 response bytes, avoiding decoding them into a String first.
+     * @param json UTF-8 encoded response body content
+     * @param length number of bytes of json to process, starting at index 0
+     * @param tileX tile X coordinate, valid values are 0-15
+     * @param tileY tile Y coordinate, valid values are 0-15
+     * @return number of markers processed
+     */
+    public int processSyncMarkersResponse(byte[] json, int length, int tileX, int tileY) {
+        checkBounds(json, length);
+
+        long ptr = acquireHandle();
+        try {
+            return processSyncMarkersResponseBytes(ptr, json, 0, length, tileX, tileY);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
+
+    /**
+     * Process response body from GET api/v2/points-of-interest/sync endpoint.  Only call this if API call was successful.
+     * <p>
+     * Native code reads the UTF-8 response bytes directly from the buffer's memory.  The buffer's
+     * position and limit are not modified.
+     * @param json direct buffer containing the UTF-8 encoded response body between its position and limit
+     * @param tileX tile X coordinate, valid values are 0-15
+     * @param tileY tile Y coordinate, valid values are 0-15
+     * @return number of markers processed
+     */
+    public int processSyncMarkersResponse(ByteBuffer json, int tileX, int tileY) {
+        checkDirect(json);
+
+        long ptr = acquireHandle();
+        try {
+            return processSyncMarkersResponseDirect(ptr, json, json.position(), json.remaining(), tileX, tileY);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
 
     /**
      * Process response body from GET api/v2/reviews/sync endpoint.  Only call this if API call was successful.
@@ -171,19 +593,185 @@ public class ActiveCaptainDatabase implements Closeable {
      * @param tileY tile Y coordinate, valid values are 0-15
      * @return number of reviews processed
      */
-    public native int processSyncReviewsResponse(String json, int tileX, int tileY);
+    public int processSyncReviewsResponse(String json, int tileX, int tileY) {
+        long ptr = acquireHandle();
+        try {
+            return processSyncReviewsResponse(ptr, json, tileX, tileY);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
+
+    /**
+     * Process response body from GET api/v2/reviews/sync endpoint.  Only call this if API call was successful.
+     * <p>
+     * Takes the raw UTF-8 response bytes, avoiding decoding them into a String first.
+     * @param json UTF-8 encoded response body content
+     * @param length number of bytes of json to process, starting at index 0
+     * @param tileX tile X coordinate, valid values are 0-15
+     * @param tileY tile Y coordinate, valid values are 0-15
+     * @return number of reviews processed
+     */
+    public int processSyncReviewsResponse(byte[] json, int length, int tileX, int tileY) {
+        checkBounds(json, length);
+
+        long ptr = acquireHandle();
+        try {
+            return processSyncReviewsResponseBytes(ptr, json, 0, length, tileX, tileY);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
+
+    /**
+     * Process response body from GET api/v2/reviews/sync endpoint.  Only call this if API call was successful.
+     * <p>
+     * Native code reads the UTF-8 response bytes directly from the buffer's memory.  The buffer's
+     * position and limit are not modified.
+     * @param json direct buffer containing the UTF-8 encoded response body between its position and limit
+     * @param tileX tile X coordinate, valid values are 0-15
+     * @param tileY tile Y coordinate, valid values are 0-15
+     * @return number of reviews processed
+     */
+    public int processSyncReviewsResponse(ByteBuffer json, int tileX, int tileY) {
+        checkDirect(json);
+
+        long ptr = acquireHandle();
+        try {
+            return processSyncReviewsResponseDirect(ptr, json, json.position(), json.remaining(), tileX, tileY);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
+
+    /**
+     * Process response body from GET api/v2/points-of-interest/sync endpoint.  Only call this if API call was successful.
+     * <p>
+     * Also returns the tile's marker last modified time once the page has been written, which is
+     * the cursor for the next page, without a separate getTileLastModified call.
+     * @param json UTF-8 encoded response body content
+     * @param length number of bytes of json to process, starting at index 0
+     * @param tileX tile X coordinate, valid values are 0-15
+     * @param tileY tile Y coordinate, valid values are 0-15
+     * @return number of markers processed, and the tile's new marker last modified time
+     */
+    public SyncPageResult processSyncMarkersPage(byte[] json, int length, int tileX, int tileY) {
+        return processSyncPage(json, length, tileX, tileY, false);
+    }
+
+    /**
+     * Process response body from GET api/v2/reviews/sync endpoint.  Only call this if API call was successful.
+     * <p>
+     * Also returns the tile's review last modified time once the page has been written, which is
+     * the cursor for the next page, without a separate getTileLastModified call.
+     * @param json UTF-8 encoded response body content
+     * @param length number of bytes of json to process, starting at index 0
+     * @param tileX tile X coordinate, valid values are 0-15
+     * @param tileY tile Y coordinate, valid values are 0-15
+     * @return number of reviews processed, and the tile's new review last modified time
+     */
+    public SyncPageResult processSyncReviewsPage(byte[] json, int length, int tileX, int tileY) {
+        return processSyncPage(json, length, tileX, tileY, true);
+    }
+
+    private SyncPageResult processSyncPage(byte[] json, int length, int tileX, int tileY, boolean reviews) {
+        checkBounds(json, length);
+
+        long ptr = acquireHandle();
+        try {
+            return processSyncPageBytes(ptr, json, 0, length, tileX, tileY, reviews);
+        } finally {
+            renderCache.invalidateOrDefer();
+            releaseHandle();
+        }
+    }
+
+    /**
+     * Defer syncing to storage, such as during the first sync of many tiles.  Until
+     * {@link #endDeferredSync()}, the database uses write-ahead logging and writes are committed
+     * without waiting for storage, so a power failure may lose writes made in the meantime,
+     * including votes and other user changes, but does not corrupt the database.
+     * <p>
+     * This only tunes syncing, it is not a transaction.  Each write is still committed on its own,
+     * so writes made before a failure are kept and nothing is rolled back.  Deferrals may be nested
+     * or overlap across threads, syncing resumes when the last one ends.  Always call
+     * endDeferredSync, in a finally block.
+     * <p>
+     * Rendered pages cached during the deferral are kept until it ends, rather than being dropped
+     * after every sync page, so they may not reflect sync pages processed since.  Other writes
+     * still drop them immediately.
+     */
+    public void beginDeferredSync() {
+        long ptr = acquireHandle();
+        try {
+            synchronized (deferredSyncLock) {
+                if (deferredSyncDepth == 0) {
+                    beginDeferredSync(ptr);
+                    renderCache.deferInvalidation();
+                }
+
+                deferredSyncDepth++;
+            }
+        } finally {
+            releaseHandle();
+        }
+    }
+
+    /**
+     * End a deferral started by {@link #beginDeferredSync()}.  When no other deferral is in
+     * progress, waits for everything written so far to reach storage and restores the previous
+     * settings.
+     */
+    public void endDeferredSync() {
+        long ptr = acquireHandle();
+        try {
+            synchronized (deferredSyncLock) {
+                if (deferredSyncDepth == 0) {
+                    throw new IllegalStateException("No deferred sync in progress.");
+                }
+
+                deferredSyncDepth--;
+
+                if (deferredSyncDepth == 0) {
+                    renderCache.resumeInvalidation();
+                    endDeferredSync(ptr);
+                }
+            }
+        } finally {
+            releaseHandle();
+        }
+    }
 
     /**
      * Process response body from POST api/v2/reviews/{id}/votes endpoint.  Only call this if API call was successful.
      * @param json response body content
      */
-    public native void processVoteForReviewResponse(String json);
+    public void processVoteForReviewResponse(String json) {
+        long ptr = acquireHandle();
+        try {
+            processVoteForReviewResponse(ptr, json);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
 
     /**
      * Process response content from a webview call.
      * @param json response body content
      */
-    public native void processWebViewResponse(String json);
+    public void processWebViewResponse(String json) {
+        long ptr = acquireHandle();
+        try {
+            processWebViewResponse(ptr, json);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+    }
 
     /**
      * Parse an acdb:// URL.
@@ -193,21 +781,262 @@ public class ActiveCaptainDatabase implements Closeable {
      * @param url acdb:// URL the user selected.
      * @param captainName user's captain name
      * @param pageSize review list page size
-     * @return AcdbUrlAction for the specified URL.  Content will be initialized based on the action type.
+     * @return AcdbUrlAction for the specified URL.  Content will be initialized based on the action type.  May be shared with other callers through the render cache, must not be modified.
+     */
+    public AcdbUrlAction parseAcdbUrl(String url, String captainName, int pageSize) {
+        return parseAcdbUrlCached(url, captainName, pageSize, false);
+    }
+
+    /**
+     * Parse an acdb:// URL, returning rendered HTML as UTF-8 bytes.
+     * <p>
+     * Same as {@link #parseAcdbUrl(String, String, int)}, except that for SEE_ALL, SHOW_PHOTOS
+     * and SHOW_SUMMARY actions the rendered HTML is returned in contentBytes rather than content.
+     * The bytes are copied straight from the native render buffer, without building a String, and
+     * can be wrapped in a ByteArrayInputStream for a WebResourceResponse.
+     * @param url acdb:// URL the user selected.
+     * @param captainName user's captain name
+     * @param pageSize review list page size
+     * @return AcdbUrlAction for the specified URL.  Content will be initialized based on the action type.  May be shared with other callers through the render cache, must not be modified.
+     */
+    public AcdbUrlAction parseAcdbUrlUtf8(String url, String captainName, int pageSize) {
+        return parseAcdbUrlCached(url, captainName, pageSize, true);
+    }
+
+    /**
+     * Render the summary pages of the given markers into the render cache, so opening one of them
+     * soon after with parseAcdbUrlUtf8("acdb://summary/{id}", captainName, pageSize) does not wait
+     * for a render.
+     * <p>
+     * Markers are rendered in the given order on a low priority background thread.  A later call
+     * replaces any markers still pending from an earlier one, and prefetching pauses while
+     * parseAcdbUrl and parseAcdbUrlUtf8 calls are rendering.  Has no effect if the render cache is
+     * disabled.
+     * @param markerIds ids of the markers most likely to be opened next, most likely first
+     * @param captainName user's captain name
+     * @param pageSize review list page size
+     */
+    public void prefetchSummaries(long[] markerIds, String captainName, int pageSize) {
+        if (markerIds == null)
+        {
+            throw new IllegalArgumentException("markerIds must not be null.");
+        }
+
+        long generation = prefetchGeneration.incrementAndGet();
+        if (renderCache.getCapacity() == 0) {
+            return;
+        }
+
+        long[] ids = markerIds.clone();
+
+        Executor taskExecutor;
+        synchronized (executorLock) {
+            if (closed)
+            {
+                throw new IllegalStateException("ActiveCaptainDatabase has been closed.");
+            }
+
+            if (prefetchExecutor == null) {
+                prefetchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "ActiveCaptainDatabasePrefetch");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+            }
+
+            taskExecutor = prefetchExecutor;
+        }
+
+        taskExecutor.execute(() -> {
+            for (long markerId : ids) {
+                if (!waitForForegroundRenders() || prefetchGeneration.get() != generation) {
+                    return;
+                }
+
+                String url = "acdb://summary/" + markerId;
+                RenderCache.Key key = new RenderCache.Key(url, captainName, pageSize, true);
+                if (renderCache.contains(key)) {
+                    continue;
+                }
+
+                try {
+                    render(key, url, captainName, pageSize, true);
+                } catch (IllegalStateException e) {
+                    // Closed while prefetching.
+                    return;
+                }
+            }
+        });
+    }
+
+    /**
+     * Get the action of an acdb:// URL without rendering anything.  Use this to decide how to
+     * handle a URL, then render it with parseAcdbUrl or parseAcdbUrlUtf8.
+     * @param url acdb:// URL the user selected.
+     * @return action parsed from the URL, UNKNOWN if it is not a valid acdb:// URL
+     */
+    public static AcdbUrlAction.ActionType parseAcdbUrlActionType(String url) {
+        if (url == null)
+        {
+            throw new IllegalArgumentException("url must not be null.");
+        }
+
+        return getAcdbUrlActionType(url);
+    }
+
+    /**
+     * Set the number of rendered pages kept by parseAcdbUrl and parseAcdbUrlUtf8.  Rendering the
+     * same URL again returns the cached AcdbUrlAction, until a write or a rendering setting change
+     * empties the cache.  Defaults to 16, 0 disables the cache.
+     * @param maxEntries maximum number of cached pages
+     */
+    public void setRenderCacheSize(int maxEntries) {
+        if (maxEntries < 0)
+        {
+            throw new IllegalArgumentException("maxEntries must not be negative.");
+        }
+
+        renderCache.setCapacity(maxEntries);
+    }
+
+    /**
+     * @return number of parseAcdbUrl and parseAcdbUrlUtf8 calls answered from the render cache
+     */
+    public long getRenderCacheHitCount() {
+        return renderCache.getHitCount();
+    }
+
+    /**
+     * @return number of parseAcdbUrl and parseAcdbUrlUtf8 calls that had to render
+     */
+    public long getRenderCacheMissCount() {
+        return renderCache.getMissCount();
+    }
+
+    /**
+     * Set the executor that runs asynchronous calls.  By default they run on a pool of daemon
+     * threads owned by this database, with one thread per read connection plus one for writes,
+     * which is shut down by {@link #close()}.
+     * @param executor executor for asynchronous calls, or null to use the default pool
+     */
+    public void setExecutor(Executor executor) {
+        synchronized (executorLock) {
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * Asynchronous version of {@link #getSearchMarkers(String, double, double, double, double, int, boolean)}.
+     * @param callback receives the results, may be null
+     * @return Future for the results.  Cancelling it before the search starts prevents it from running.
+     */
+    public Future<SearchMarker[]> getSearchMarkersAsync(String name, double south, double west, double north, double east, int maxResultCount, boolean escapeHtml, ResultCallback<SearchMarker[]> callback) {
+        return submit(() -> getSearchMarkers(name, south, west, north, east, maxResultCount, escapeHtml), callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #getSearchMarkers(String, double, double, double, double, int, boolean, SearchResultBuffer)}.
+     * <p>
+     * results is written to on another thread, and must not be used until the callback is called
+     * or the search is cancelled before it starts.
+     * @param callback receives results once they have been written, may be null
+     * @return Future for results.  Cancelling it before the search starts prevents it from running.
+     */
+    public Future<SearchResultBuffer> getSearchMarkersAsync(String name, double south, double west, double north, double east, int maxResultCount, boolean escapeHtml, SearchResultBuffer results, ResultCallback<SearchResultBuffer> callback) {
+        if (results == null)
+        {
+            throw new IllegalArgumentException("results must not be null.");
+        }
+
+        return submit(() -> {
+            getSearchMarkers(name, south, west, north, east, maxResultCount, escapeHtml, results);
+            return results;
+        }, callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #installTile(String, int, int)}.
+     * @param callback notified when the install completes, may be null
+     * @return Future that completes with the install statistics.  Cancelling it before the install starts prevents it from running.
+     */
+    public Future<TileInstallStats> installTileAsync(String path, int tileX, int tileY, ResultCallback<TileInstallStats> callback) {
+        return submit(() -> installTile(path, tileX, tileY), callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #installCompressedTile(String, int, int)}.
+     * @param callback notified when the install completes, may be null
+     * @return Future that completes with the install statistics.  Cancelling it before the install starts prevents it from running.
+     */
+    public Future<TileInstallStats> installCompressedTileAsync(String gzipPath, int tileX, int tileY, ResultCallback<TileInstallStats> callback) {
+        return submit(() -> installCompressedTile(gzipPath, tileX, tileY), callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #processSyncMarkersResponse(String, int, int)}.
+     * @param callback receives the number of markers processed, may be null
+     * @return Future for the number of markers processed.  Cancelling it before processing starts prevents it from running.
+     */
+    public Future<Integer> processSyncMarkersResponseAsync(String json, int tileX, int tileY, ResultCallback<Integer> callback) {
+        return submit(() -> processSyncMarkersResponse(json, tileX, tileY), callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #processSyncReviewsResponse(String, int, int)}.
+     * @param callback receives the number of reviews processed, may be null
+     * @return Future for the number of reviews processed.  Cancelling it before processing starts prevents it from running.
+     */
+    public Future<Integer> processSyncReviewsResponseAsync(String json, int tileX, int tileY, ResultCallback<Integer> callback) {
+        return submit(() -> processSyncReviewsResponse(json, tileX, tileY), callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #parseAcdbUrl(String, String, int)}.
+     * @param callback receives the AcdbUrlAction, may be null
+     * @return Future for the AcdbUrlAction.  Cancelling it before rendering starts prevents it from running.
+     */
+    public Future<AcdbUrlAction> parseAcdbUrlAsync(String url, String captainName, int pageSize, ResultCallback<AcdbUrlAction> callback) {
+        return submit(() -> parseAcdbUrl(url, captainName, pageSize), callback);
+    }
+
+    /**
+     * Asynchronous version of {@link #parseAcdbUrlUtf8(String, String, int)}.
+     * @param callback receives the AcdbUrlAction, may be null
+     * @return Future for the AcdbUrlAction.  Cancelling it before rendering starts prevents it from running.
      */
-    public native AcdbUrlAction parseAcdbUrl(String url, String captainName, int pageSize);
+    public Future<AcdbUrlAction> parseAcdbUrlUtf8Async(String url, String captainName, int pageSize, ResultCallback<AcdbUrlAction> callback) {
+        return submit(() -> parseAcdbUrlUtf8(url, captainName, pageSize), callback);
+    }
 
     static {
         System.loadLibrary("activecaptaincommunitysdk");
     }
 
     /**
-     * Constructor, will initialize native code.
+     * Constructor, will initialize native code.  Reads and writes share a single SQLite connection.
      * @param databaseFile path to SQLite database.  SQLite file may not exist until the first tile
      *                     has been downloaded and installed.
      * @param languageCode language to be used when rendering HTML
      */
     public ActiveCaptainDatabase(File databaseFile, String languageCode) {
+        this(databaseFile, languageCode, 0);
+    }
+
+    /**
+     * Constructor, will initialize native code.
+     * <p>
+     * If readConnectionCount is greater than 0, the database is switched to WAL journal mode and
+     * searches and HTML rendering use a pool of that many read connections, while installs and
+     * sync processing use a separate writer connection.  Reads then see the last committed data
+     * instead of waiting for a write to complete.  Up to readConnectionCount reads run at the same
+     * time, further reads wait for a connection to be returned to the pool.
+     * @param databaseFile path to SQLite database.  SQLite file may not exist until the first tile
+     *                     has been downloaded and installed.
+     * @param languageCode language to be used when rendering HTML
+     * @param readConnectionCount number of read connections, 0 to share the writer connection
+     */
+    public ActiveCaptainDatabase(File databaseFile, String languageCode, int readConnectionCount) {
         if (databaseFile == null)
         {
             throw new IllegalArgumentException("databaseFile must not be null.");
@@ -218,16 +1047,212 @@ public class ActiveCaptainDatabase implements Closeable {
             throw new IllegalArgumentException("language code must not be null.");
         }
 
-        init(databaseFile.getPath(), languageCode);
+        if (readConnectionCount < 0)
+        {
+            throw new IllegalArgumentException("readConnectionCount must not be negative.");
+        }
+
+        ptrHolder = init(databaseFile.getPath(), languageCode, readConnectionCount);
+        asyncThreadCount = readConnectionCount + 1;
+    }
+
+    private <T> Future<T> submit(Callable<T> callable, ResultCallback<T> callback) {
+        DatabaseTask<T> task = new DatabaseTask<>(callable, callback);
+
+        Executor taskExecutor;
+        synchronized (executorLock) {
+            if (closed)
+            {
+                throw new IllegalStateException("ActiveCaptainDatabase has been closed.");
+            }
+
+            if (executor != null) {
+                taskExecutor = executor;
+            } else {
+                if (ownedExecutor == null) {
+                    ownedExecutor = Executors.newFixedThreadPool(asyncThreadCount, runnable -> {
+                        Thread thread = new Thread(runnable, "ActiveCaptainDatabase");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+
+                taskExecutor = ownedExecutor;
+            }
+        }
+
+        taskExecutor.execute(task);
+        return task;
+    }
+
+    private long acquireHandle() {
+        handleLock.readLock().lock();
+
+        if (ptrHolder == 0)
+        {
+            handleLock.readLock().unlock();
+            throw new IllegalStateException("ActiveCaptainDatabase has been closed.");
+        }
+
+        return ptrHolder;
+    }
+
+    private void releaseHandle() {
+        handleLock.readLock().unlock();
+    }
+
+    // Only rendered pages are cached, the other actions are cheap to parse.  Cached actions are
+    // shared between callers.
+    private AcdbUrlAction parseAcdbUrlCached(String url, String captainName, int pageSize, boolean utf8) {
+        RenderCache.Key key = new RenderCache.Key(url, captainName, pageSize, utf8);
+        AcdbUrlAction action = renderCache.get(key);
+        if (action != null) {
+            return action;
+        }
+
+        synchronized (foregroundRenderLock) {
+            foregroundRenderCount++;
+        }
+
+        try {
+            return render(key, url, captainName, pageSize, utf8);
+        } finally {
+            synchronized (foregroundRenderLock) {
+                foregroundRenderCount--;
+                foregroundRenderLock.notifyAll();
+            }
+        }
+    }
+
+    private AcdbUrlAction render(RenderCache.Key key, String url, String captainName, int pageSize, boolean utf8) {
+        long generation = renderCache.getGeneration();
+        AcdbUrlAction action;
+
+        long ptr = acquireHandle();
+        try {
+            action = utf8 ? parseAcdbUrlUtf8(ptr, url, captainName, pageSize) : parseAcdbUrl(ptr, url, captainName, pageSize);
+        } finally {
+            releaseHandle();
+        }
+
+        if (action != null && (action.action == AcdbUrlAction.ActionType.SEE_ALL || action.action == AcdbUrlAction.ActionType.SHOW_PHOTOS || action.action == AcdbUrlAction.ActionType.SHOW_SUMMARY)) {
+            renderCache.put(key, action, generation);
+        }
+
+        return action;
+    }
+
+    // Returns false if interrupted, which happens when the database is closed.
+    private boolean waitForForegroundRenders() {
+        synchronized (foregroundRenderLock) {
+            while (foregroundRenderCount > 0) {
+                try {
+                    foregroundRenderLock.wait();
+                } catch (InterruptedException e) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private TileInstallStats[] installTileBatch(String[] paths, int[] tileX, int[] tileY, boolean compressed) throws IOException {
+        if (paths == null || tileX == null || tileY == null)
+        {
+            throw new IllegalArgumentException("paths, tileX and tileY must not be null.");
+        }
+
+        if (tileX.length != paths.length || tileY.length != paths.length)
+        {
+            throw new IllegalArgumentException("paths, tileX and tileY must have the same length.");
+        }
+
+        for (String path : paths) {
+            if (path == null)
+            {
+                throw new IllegalArgumentException("paths must not contain null.");
+            }
+        }
+
+        if (paths.length == 0) {
+            return new TileInstallStats[0];
+        }
+
+        TileInstallStats[] stats;
+
+        long ptr = acquireHandle();
+        try {
+            stats = installTiles(ptr, paths, tileX, tileY, compressed);
+        } finally {
+            renderCache.invalidate();
+            releaseHandle();
+        }
+
+        if (stats == null) {
+            throw new IOException("Failed to install " + paths.length + " tiles.");
+        }
+
+        return stats;
+    }
+
+    private static void checkBounds(byte[] json, int length) {
+        if (json == null)
+        {
+            throw new IllegalArgumentException("json must not be null.");
+        }
+
+        if (length < 0 || length > json.length)
+        {
+            throw new IllegalArgumentException("length must be between 0 and json.length.");
+        }
+    }
+
+    private static void checkDirect(ByteBuffer json) {
+        if (json == null)
+        {
+            throw new IllegalArgumentException("json must not be null.");
+        }
+
+        if (!json.isDirect())
+        {
+            throw new IllegalArgumentException("json must be a direct buffer.");
+        }
     }
 
     /**
-     * Close database and clean up dynamic memory used by native code.
+     * Close database and clean up dynamic memory used by native code.  Waits for calls in progress
+     * to complete.  Asynchronous calls that have not started on the default executor are
+     * cancelled.  Has no effect if the database is already closed.
      */
     @Override
     public void close() throws IOException {
-        cleanup();
-        this.ptrHolder = 0;
+        synchronized (executorLock) {
+            closed = true;
+
+            if (ownedExecutor != null) {
+                for (Runnable task : ownedExecutor.shutdownNow()) {
+                    ((Future<?>) task).cancel(false);
+                }
+
+                ownedExecutor = null;
+            }
+
+            if (prefetchExecutor != null) {
+                prefetchExecutor.shutdownNow();
+                prefetchExecutor = null;
+            }
+        }
+
+        handleLock.writeLock().lock();
+        try {
+            if (ptrHolder != 0) {
+                cleanup(ptrHolder);
+                ptrHolder = 0;
+            }
+        } finally {
+            handleLock.writeLock().unlock();
+        }
     }
 
     /**
@@ -235,7 +1260,10 @@ public class ActiveCaptainDatabase implements Closeable {
      */
     @Override
     public void finalize() {
-        cleanup();
-        this.ptrHolder = 0;
+        try {
+            close();
+        } catch (IOException e) {
+            // close() does not actually throw.
+        }
     }
 }
@@ -58,6 +58,13 @@ public class AcdbUrlAction {
     public AcdbUrlAction(ActionType action, String content) {
         this.action = action;
         this.content = content;
+        this.contentBytes = null;
+    }
+
+    public AcdbUrlAction(ActionType action, byte[] contentBytes) {
+        this.action = action;
+        this.content = null;
+        this.contentBytes = contentBytes;
     }
 
     /**
@@ -77,6 +84,15 @@ public class AcdbUrlAction {
      * <p>
      * If action is VOTE_REVIEW, content will contain a review ID.  Must be parsed as a long integer
      * (64-bit).
+     * <p>
+     * Null if the rendered HTML was returned in contentBytes instead.
      */
     public String content;
+
+    /**
+     * UTF-8 encoded rendered HTML, only set by ActiveCaptainDatabase.parseAcdbUrlUtf8 for SEE_ALL,
+     * SHOW_PHOTOS and SHOW_SUMMARY actions.  Can be used directly as a WebView response body.
+     * Null otherwise.
+     */
+    public byte[] contentBytes;
 }
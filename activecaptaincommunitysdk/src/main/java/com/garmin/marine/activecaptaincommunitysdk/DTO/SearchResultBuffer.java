@@ -0,0 +1,160 @@
+/*------------------------------------------------------------------------------
+Copyright 2021 Garmin Ltd. or its subsidiaries.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+------------------------------------------------------------------------------*/
+
+package com.garmin.marine.activecaptaincommunitysdk.DTO;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable, columnar holder for search results.
+ * <p>
+ * Result i is described by markerIds[i], latitudes[i], longitudes[i], markerTypes[i] and
+ * mapIcons[i].  Its UTF-8 encoded name is stored in names, starting at nameOffsets[i] and
+ * ending before nameOffsets[i + 1].  Arrays are only reallocated when a query needs more room
+ * than the previous ones, so repeated queries with the same buffer allocate nothing.
+ * <p>
+ * Not thread-safe, a buffer must not be filled by one thread while being read by another.
+ */
+public class SearchResultBuffer {
+    private static final int INITIAL_NAME_BYTES_PER_RESULT = 32;
+
+    private static final MarkerType[] MARKER_TYPES = MarkerType.values();
+    private static final MapIconType[] MAP_ICON_TYPES = MapIconType.values();
+
+    /**
+     * Number of valid results.
+     */
+    public int count;
+
+    public long[] markerIds;
+    public double[] latitudes;
+    public double[] longitudes;
+
+    /**
+     * MarkerType ordinal of each result.
+     */
+    public byte[] markerTypes;
+
+    /**
+     * MapIconType ordinal of each result.
+     */
+    public byte[] mapIcons;
+
+    /**
+     * Offset of each result's name in names, with one extra entry marking the end of the last name.
+     */
+    public int[] nameOffsets;
+
+    /**
+     * UTF-8 encoded names of all results, back to back.
+     */
+    public byte[] names;
+
+    public SearchResultBuffer() {
+        this(0);
+    }
+
+    public SearchResultBuffer(int capacity) {
+        count = 0;
+        markerIds = new long[0];
+        latitudes = new double[0];
+        longitudes = new double[0];
+        markerTypes = new byte[0];
+        mapIcons = new byte[0];
+        nameOffsets = new int[1];
+        names = new byte[0];
+
+        ensureCapacity(capacity);
+    }
+
+    /**
+     * Grow the buffer, if needed, so it can hold the given number of results.
+     * @param capacity number of results the buffer must be able to hold
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative.");
+        }
+
+        if (capacity <= markerIds.length) {
+            return;
+        }
+
+        markerIds = new long[capacity];
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        markerTypes = new byte[capacity];
+        mapIcons = new byte[capacity];
+        nameOffsets = new int[capacity + 1];
+
+        if (names.length < capacity * INITIAL_NAME_BYTES_PER_RESULT) {
+            names = new byte[capacity * INITIAL_NAME_BYTES_PER_RESULT];
+        }
+
+        count = 0;
+    }
+
+    public int getCapacity() {
+        return markerIds.length;
+    }
+
+    public long getId(int index) {
+        return markerIds[checkIndex(index)];
+    }
+
+    public double getLatitude(int index) {
+        return latitudes[checkIndex(index)];
+    }
+
+    public double getLongitude(int index) {
+        return longitudes[checkIndex(index)];
+    }
+
+    public MarkerType getMarkerType(int index) {
+        return MARKER_TYPES[markerTypes[checkIndex(index)]];
+    }
+
+    public MapIconType getMapIcon(int index) {
+        return MAP_ICON_TYPES[mapIcons[checkIndex(index)]];
+    }
+
+    /**
+     * Decode the name of the given result.  Allocates a new String on every call.
+     * @param index result index
+     * @return name of the result
+     */
+    public String getName(int index) {
+        checkIndex(index);
+        return new String(names, nameOffsets[index], nameOffsets[index + 1] - nameOffsets[index], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copy the given result into a new SearchMarker.
+     * @param index result index
+     * @return SearchMarker with the same content as the result
+     */
+    public SearchMarker toSearchMarker(int index) {
+        return new SearchMarker(getId(index), getName(index), getMarkerType(index), getLatitude(index), getLongitude(index), getMapIcon(index));
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("index " + index + " out of range, count is " + count + ".");
+        }
+
+        return index;
+    }
+}
@@ -0,0 +1,40 @@
+/*------------------------------------------------------------------------------
+Copyright 2021 Garmin Ltd. or its subsidiaries.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+------------------------------------------------------------------------------*/
+
+package com.garmin.marine.activecaptaincommunitysdk.DTO;
+
+/**
+ * Outcome of processing one sync response page.
+ */
+public class SyncPageResult {
+    /**
+     * Number of markers or reviews processed.
+     */
+    public final int resultCount;
+
+    /**
+     * Tile's marker or review last modified time after the page was processed, in milliseconds
+     * since the Unix epoch, 0 if the tile has none.  Passed through
+     * ActiveCaptainDatabase.formatLastModified, this is the lastModifiedAfter value for the next
+     * page.
+     */
+    public final long lastModified;
+
+    public SyncPageResult(int resultCount, long lastModified) {
+        this.resultCount = resultCount;
+        this.lastModified = lastModified;
+    }
+}
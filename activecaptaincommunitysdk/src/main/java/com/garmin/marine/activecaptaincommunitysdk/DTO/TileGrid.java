@@ -0,0 +1,104 @@
+/*------------------------------------------------------------------------------
+Copyright 2021 Garmin Ltd. or its subsidiaries.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+------------------------------------------------------------------------------*/
+
+package com.garmin.marine.activecaptaincommunitysdk.DTO;
+
+import java.util.Arrays;
+
+/**
+ * Map from tiles in the 16x16 tile grid to values, stored in a 256-slot array.
+ * <p>
+ * Lookup by tile is a single array access.  The set of tiles with a value is kept as a
+ * {@link TileSet}, which can be combined with other sets and iterated without allocating.
+ * <p>
+ * Not thread-safe.
+ * @param <T> value type
+ */
+public class TileGrid<T> {
+    public interface EntryVisitor<T> {
+        void visit(int tileX, int tileY, T value);
+    }
+
+    private final Object[] values = new Object[TileSet.TILE_COUNT];
+    private final TileSet tiles = new TileSet();
+
+    @SuppressWarnings("unchecked")
+    public T get(int tileX, int tileY) {
+        return (T) values[TileSet.index(tileX, tileY)];
+    }
+
+    /**
+     * @return value previously stored for the tile, null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public T put(int tileX, int tileY, T value) {
+        if (value == null)
+        {
+            throw new IllegalArgumentException("value must not be null.");
+        }
+
+        int index = TileSet.index(tileX, tileY);
+        T previous = (T) values[index];
+        values[index] = value;
+        tiles.add(tileX, tileY);
+
+        return previous;
+    }
+
+    /**
+     * @return value previously stored for the tile, null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public T remove(int tileX, int tileY) {
+        int index = TileSet.index(tileX, tileY);
+        T previous = (T) values[index];
+        values[index] = null;
+        tiles.remove(tileX, tileY);
+
+        return previous;
+    }
+
+    public boolean contains(int tileX, int tileY) {
+        return tiles.contains(tileX, tileY);
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        tiles.clear();
+    }
+
+    public boolean isEmpty() {
+        return tiles.isEmpty();
+    }
+
+    public int size() {
+        return tiles.size();
+    }
+
+    /**
+     * @return tiles that have a value.  The set is owned by the grid and must not be modified.
+     */
+    public TileSet getTiles() {
+        return tiles;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryVisitor<T> visitor) {
+        for (int index = tiles.nextIndex(0); index >= 0; index = tiles.nextIndex(index + 1)) {
+            visitor.visit(TileSet.tileX(index), TileSet.tileY(index), (T) values[index]);
+        }
+    }
+}
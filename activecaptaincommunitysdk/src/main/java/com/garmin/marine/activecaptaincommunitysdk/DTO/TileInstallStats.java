@@ -0,0 +1,56 @@
+/*------------------------------------------------------------------------------
+Copyright 2021 Garmin Ltd. or its subsidiaries.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+------------------------------------------------------------------------------*/
+
+package com.garmin.marine.activecaptaincommunitysdk.DTO;
+
+/**
+ * What installing a tile database did, and how long it took.
+ */
+public class TileInstallStats {
+    public final int tileX;
+    public final int tileY;
+
+    /**
+     * Rows inserted, updated or deleted in the database by the merge, as counted by SQLite on the
+     * connection that merged the tile, or -1 if that connection could not be identified.
+     */
+    public final long rowsChanged;
+
+    /**
+     * Time spent decompressing the tile, in milliseconds, 0 if it was not compressed.
+     */
+    public final long inflateMillis;
+
+    /**
+     * Time spent merging the tile into the database, in milliseconds, not including waiting for
+     * other writes to finish.
+     */
+    public final long installMillis;
+
+    public TileInstallStats(int tileX, int tileY, long rowsChanged, long inflateMillis, long installMillis) {
+        this.tileX = tileX;
+        this.tileY = tileY;
+        this.rowsChanged = rowsChanged;
+        this.inflateMillis = inflateMillis;
+        this.installMillis = installMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Tile " + tileX + " " + tileY + ": " + (rowsChanged < 0 ? "unknown" : Long.toString(rowsChanged))
+                + " rows changed, inflate " + inflateMillis + " ms, install " + installMillis + " ms";
+    }
+}
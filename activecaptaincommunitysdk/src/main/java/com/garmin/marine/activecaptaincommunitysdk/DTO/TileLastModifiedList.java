@@ -0,0 +1,56 @@
+/*------------------------------------------------------------------------------
+Copyright 2021 Garmin Ltd. or its subsidiaries.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+------------------------------------------------------------------------------*/
+
+package com.garmin.marine.activecaptaincommunitysdk.DTO;
+
+/**
+ * Marker and review last modified times for a set of tiles, stored as parallel arrays.
+ * <p>
+ * Tile i is (tileX[i], tileY[i]).  Times are milliseconds since the Unix epoch, 0 if the tile has
+ * no markers or reviews.  Use ActiveCaptainDatabase.formatLastModified to convert a time to the
+ * form expected by the sync API.
+ */
+public class TileLastModifiedList {
+    /**
+     * Number of tiles.
+     */
+    public final int count;
+
+    public final int[] tileX;
+    public final int[] tileY;
+    public final long[] markerLastModified;
+    public final long[] reviewLastModified;
+
+    public TileLastModifiedList(int[] tileX, int[] tileY, long[] markerLastModified, long[] reviewLastModified) {
+        this.count = tileX.length;
+        this.tileX = tileX;
+        this.tileY = tileY;
+        this.markerLastModified = markerLastModified;
+        this.reviewLastModified = reviewLastModified;
+    }
+
+    /**
+     * @return set of all tiles in the list
+     */
+    public TileSet getTiles() {
+        TileSet tiles = new TileSet();
+        for (int i = 0; i < count; i++) {
+            tiles.add(tileX[i], tileY[i]);
+        }
+
+        return tiles;
+    }
+}
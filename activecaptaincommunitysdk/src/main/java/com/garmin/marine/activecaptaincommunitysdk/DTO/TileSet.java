@@ -0,0 +1,198 @@
+/*------------------------------------------------------------------------------
+Copyright 2021 Garmin Ltd. or its subsidiaries.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+------------------------------------------------------------------------------*/
+
+package com.garmin.marine.activecaptaincommunitysdk.DTO;
+
+import java.util.Arrays;
+
+/**
+ * Set of tiles in the 16x16 tile grid, stored as a 256-bit bitset.
+ * <p>
+ * Each tile has an index, tileY * 16 + tileX.  Iterate without allocating with
+ * {@link #nextIndex(int)}, or with {@link #forEach(TileVisitor)}.
+ * <p>
+ * Not thread-safe.
+ */
+public class TileSet {
+    public static final int GRID_SIZE = 16;
+    public static final int TILE_COUNT = GRID_SIZE * GRID_SIZE;
+
+    public interface TileVisitor {
+        void visit(int tileX, int tileY);
+    }
+
+    private final long[] bits = new long[TILE_COUNT / Long.SIZE];
+
+    public TileSet() {
+    }
+
+    public TileSet(TileSet other) {
+        System.arraycopy(other.bits, 0, bits, 0, bits.length);
+    }
+
+    public static int index(int tileX, int tileY) {
+        if (tileX < 0 || tileX >= GRID_SIZE || tileY < 0 || tileY >= GRID_SIZE)
+        {
+            throw new IllegalArgumentException("tileX and tileY must be between 0 and 15.");
+        }
+
+        return tileY * GRID_SIZE + tileX;
+    }
+
+    public static int tileX(int index) {
+        return index % GRID_SIZE;
+    }
+
+    public static int tileY(int index) {
+        return index / GRID_SIZE;
+    }
+
+    /**
+     * @return true if the tile was not already in the set
+     */
+    public boolean add(int tileX, int tileY) {
+        int index = index(tileX, tileY);
+        long mask = 1L << index;
+        boolean added = (bits[index >>> 6] & mask) == 0;
+        bits[index >>> 6] |= mask;
+
+        return added;
+    }
+
+    /**
+     * @return true if the tile was in the set
+     */
+    public boolean remove(int tileX, int tileY) {
+        int index = index(tileX, tileY);
+        long mask = 1L << index;
+        boolean removed = (bits[index >>> 6] & mask) != 0;
+        bits[index >>> 6] &= ~mask;
+
+        return removed;
+    }
+
+    public boolean contains(int tileX, int tileY) {
+        return containsIndex(index(tileX, tileY));
+    }
+
+    public boolean containsIndex(int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Add all tiles in other to this set.
+     */
+    public void addAll(TileSet other) {
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] |= other.bits[i];
+        }
+    }
+
+    /**
+     * Remove all tiles that are not in other from this set.
+     */
+    public void retainAll(TileSet other) {
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] &= other.bits[i];
+        }
+    }
+
+    /**
+     * Remove all tiles in other from this set.
+     */
+    public void removeAll(TileSet other) {
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] &= ~other.bits[i];
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(bits, 0);
+    }
+
+    public boolean isEmpty() {
+        for (long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public int size() {
+        int size = 0;
+        for (long word : bits) {
+            size += Long.bitCount(word);
+        }
+
+        return size;
+    }
+
+    /**
+     * Find the next tile in the set.
+     * @param fromIndex index to start searching from, inclusive
+     * @return index of the first tile at or after fromIndex, -1 if there is none
+     */
+    public int nextIndex(int fromIndex) {
+        if (fromIndex < 0) {
+            fromIndex = 0;
+        }
+
+        int wordIndex = fromIndex >>> 6;
+        if (wordIndex >= bits.length) {
+            return -1;
+        }
+
+        long word = bits[wordIndex] & (-1L << fromIndex);
+
+        while (true) {
+            if (word != 0) {
+                return wordIndex * Long.SIZE + Long.numberOfTrailingZeros(word);
+            }
+
+            if (++wordIndex == bits.length) {
+                return -1;
+            }
+
+            word = bits[wordIndex];
+        }
+    }
+
+    public void forEach(TileVisitor visitor) {
+        for (int index = nextIndex(0); index >= 0; index = nextIndex(index + 1)) {
+            visitor.visit(tileX(index), tileY(index));
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof TileSet)) {
+            return false;
+        }
+
+        return Arrays.equals(bits, ((TileSet) o).bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bits);
+    }
+}
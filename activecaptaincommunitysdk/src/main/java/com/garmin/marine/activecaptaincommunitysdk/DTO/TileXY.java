@@ -24,4 +24,23 @@ public class TileXY {
         this.tileX = tileX;
         this.tileY = tileY;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof TileXY)) {
+            return false;
+        }
+
+        TileXY other = (TileXY) o;
+        return tileX == other.tileX && tileY == other.tileY;
+    }
+
+    @Override
+    public int hashCode() {
+        return tileY * TileSet.GRID_SIZE + tileX;
+    }
 }
@@ -0,0 +1,55 @@
+/*------------------------------------------------------------------------------
+Copyright 2021 Garmin Ltd. or its subsidiaries.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+------------------------------------------------------------------------------*/
+
+package com.garmin.marine.activecaptaincommunitysdk;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * FutureTask that reports its outcome to an optional ResultCallback.  A task cancelled before it
+ * starts never runs.
+ */
+class DatabaseTask<T> extends FutureTask<T> {
+    private final ResultCallback<T> callback;
+
+    DatabaseTask(Callable<T> callable, ResultCallback<T> callback) {
+        super(callable);
+        this.callback = callback;
+    }
+
+    @Override
+    protected void done() {
+        if (callback == null || isCancelled()) {
+            return;
+        }
+
+        T result;
+        try {
+            result = get();
+        } catch (ExecutionException e) {
+            callback.onError(e.getCause());
+            return;
+        } catch (InterruptedException e) {
+            // Not reachable, done() is only called once the result is available.
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        callback.onResult(result);
+    }
+}
@@ -0,0 +1,167 @@
+/*------------------------------------------------------------------------------
+Copyright 2021 Garmin Ltd. or its subsidiaries.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+------------------------------------------------------------------------------*/
+
+package com.garmin.marine.activecaptaincommunitysdk;
+
+import com.garmin.marine.activecaptaincommunitysdk.DTO.AcdbUrlAction;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded LRU cache of rendered acdb:// pages.
+ * <p>
+ * Writes and rendering setting changes call {@link #invalidate()}, which empties the cache and
+ * advances its generation.  A render that started before an invalidation is not stored, so a
+ * page rendered from data that was being replaced never outlives the write.
+ * <p>
+ * Sync pages arrive continuously during a sync, and invalidating on each would keep the cache
+ * empty.  Between {@link #deferInvalidation()} and {@link #resumeInvalidation()}, they call
+ * {@link #invalidateOrDefer()} instead, and the cache is invalidated once when the sync ends.
+ */
+class RenderCache {
+    static final class Key {
+        private final String url;
+        private final String captainName;
+        private final int pageSize;
+        private final boolean utf8;
+
+        Key(String url, String captainName, int pageSize, boolean utf8) {
+            this.url = url;
+            this.captainName = captainName;
+            this.pageSize = pageSize;
+            this.utf8 = utf8;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) o;
+            return pageSize == other.pageSize && utf8 == other.utf8 && Objects.equals(url, other.url) && Objects.equals(captainName, other.captainName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(url, captainName, pageSize, utf8);
+        }
+    }
+
+    private final LinkedHashMap<Key, AcdbUrlAction> entries = new LinkedHashMap<Key, AcdbUrlAction>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, AcdbUrlAction> eldest) {
+            return size() > capacity;
+        }
+    };
+
+    private int capacity;
+    private long generation = 0;
+    private boolean deferring = false;
+    private boolean invalidationDeferred = false;
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    RenderCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    synchronized AcdbUrlAction get(Key key) {
+        AcdbUrlAction action = entries.get(key);
+        if (action != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+
+        return action;
+    }
+
+    /**
+     * Check for an entry without counting a hit or miss.
+     */
+    synchronized boolean contains(Key key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Generation to pass to {@link #put(Key, AcdbUrlAction, long)}, read before rendering.
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    synchronized void put(Key key, AcdbUrlAction action, long renderGeneration) {
+        if (renderGeneration == generation && capacity > 0) {
+            entries.put(key, action);
+        }
+    }
+
+    synchronized void invalidate() {
+        generation++;
+        entries.clear();
+    }
+
+    /**
+     * Invalidate, unless invalidation is deferred, in which case it happens when it resumes.
+     */
+    synchronized void invalidateOrDefer() {
+        if (deferring) {
+            invalidationDeferred = true;
+        } else {
+            invalidate();
+        }
+    }
+
+    synchronized void deferInvalidation() {
+        deferring = true;
+    }
+
+    synchronized void resumeInvalidation() {
+        deferring = false;
+
+        if (invalidationDeferred) {
+            invalidationDeferred = false;
+            invalidate();
+        }
+    }
+
+    synchronized void setCapacity(int capacity) {
+        this.capacity = capacity;
+
+        while (entries.size() > capacity) {
+            entries.remove(entries.keySet().iterator().next());
+        }
+    }
+
+    synchronized int getCapacity() {
+        return capacity;
+    }
+
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    synchronized long getMissCount() {
+        return missCount;
+    }
+}
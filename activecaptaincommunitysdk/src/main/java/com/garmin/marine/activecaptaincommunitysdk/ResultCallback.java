@@ -0,0 +1,38 @@
+/*------------------------------------------------------------------------------
+Copyright 2021 Garmin Ltd. or its subsidiaries.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+------------------------------------------------------------------------------*/
+
+package com.garmin.marine.activecaptaincommunitysdk;
+
+/**
+ * Receives the outcome of an asynchronous ActiveCaptainDatabase call.
+ * <p>
+ * Called on the thread that ran the call, not the thread that started it.  Neither method is
+ * called if the call was cancelled.
+ * @param <T> result type
+ */
+public interface ResultCallback<T> {
+    /**
+     * Called when the call completes successfully.
+     * @param result result of the call, null for calls without a result
+     */
+    void onResult(T result);
+
+    /**
+     * Called when the call throws.
+     * @param error exception thrown by the call
+     */
+    void onError(Throwable error);
+}
@@ -0,0 +1,125 @@
+/*------------------------------------------------------------------------------
+Copyright 2021 Garmin Ltd. or its subsidiaries.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package com.garmin.marine.activecaptaincommunitysdk.DTO;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class SearchResultBufferTest {
+    // Fills the buffer the way native code does.
+    private static SearchResultBuffer fill(String... names) {
+        SearchResultBuffer buffer = new SearchResultBuffer(names.length);
+
+        int offset = 0;
+        for (int i = 0; i < names.length; i++) {
+            byte[] name = names[i].getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(name, 0, buffer.names, offset, name.length);
+
+            buffer.markerIds[i] = 1000 + i;
+            buffer.latitudes[i] = 10.5 + i;
+            buffer.longitudes[i] = -20.25 - i;
+            buffer.markerTypes[i] = (byte) MarkerType.MARINA.ordinal();
+            buffer.mapIcons[i] = (byte) MapIconType.MARINA_SPONSOR.ordinal();
+            buffer.nameOffsets[i] = offset;
+
+            offset += name.length;
+        }
+
+        buffer.nameOffsets[names.length] = offset;
+        buffer.count = names.length;
+
+        return buffer;
+    }
+
+    @Test
+    public void readsColumns() {
+        SearchResultBuffer buffer = fill("Marina", "Dock");
+
+        assertEquals(1001, buffer.getId(1));
+        assertEquals(11.5, buffer.getLatitude(1), 0.0);
+        assertEquals(-21.25, buffer.getLongitude(1), 0.0);
+        assertEquals(MarkerType.MARINA, buffer.getMarkerType(1));
+        assertEquals(MapIconType.MARINA_SPONSOR, buffer.getMapIcon(1));
+        assertEquals("Marina", buffer.getName(0));
+        assertEquals("Dock", buffer.getName(1));
+    }
+
+    @Test
+    public void decodesMultiByteNames() {
+        SearchResultBuffer buffer = fill("Île d'Orléans", "", "港");
+
+        assertEquals("Île d'Orléans", buffer.getName(0));
+        assertEquals("", buffer.getName(1));
+        assertEquals("港", buffer.getName(2));
+    }
+
+    @Test
+    public void copiesIntoSearchMarker() {
+        SearchMarker marker = fill("Marina").toSearchMarker(0);
+
+        assertEquals(1000, marker.getId());
+        assertEquals("Marina", marker.getName());
+        assertEquals(MapIconType.MARINA_SPONSOR, marker.getMapIcon());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsIndexPastCount() {
+        SearchResultBuffer buffer = fill("Marina");
+        buffer.ensureCapacity(1);
+
+        buffer.getId(1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsNegativeIndex() {
+        fill("Marina").getName(-1);
+    }
+
+    @Test
+    public void ensureCapacityKeepsArraysThatFit() {
+        SearchResultBuffer buffer = new SearchResultBuffer(10);
+        long[] markerIds = buffer.markerIds;
+        byte[] names = buffer.names;
+
+        buffer.ensureCapacity(5);
+
+        assertSame(markerIds, buffer.markerIds);
+        assertSame(names, buffer.names);
+        assertEquals(10, buffer.getCapacity());
+    }
+
+    @Test
+    public void ensureCapacityGrowsAndResets() {
+        SearchResultBuffer buffer = fill("Marina");
+
+        buffer.ensureCapacity(20);
+
+        assertEquals(20, buffer.getCapacity());
+        assertEquals(21, buffer.nameOffsets.length);
+        assertEquals(0, buffer.count);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ensureCapacityRejectsNegative() {
+        new SearchResultBuffer().ensureCapacity(-1);
+    }
+}
@@ -0,0 +1,101 @@
+/*------------------------------------------------------------------------------
+Copyright 2021 Garmin Ltd. or its subsidiaries.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package com.garmin.marine.activecaptaincommunitysdk.DTO;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TileGridTest {
+    @Test
+    public void putReturnsPreviousValue() {
+        TileGrid<String> grid = new TileGrid<>();
+
+        assertNull(grid.put(4, 5, "first"));
+        assertEquals("first", grid.put(4, 5, "second"));
+        assertEquals("second", grid.get(4, 5));
+        assertEquals(1, grid.size());
+    }
+
+    @Test
+    public void removeClearsValueAndTile() {
+        TileGrid<String> grid = new TileGrid<>();
+        grid.put(4, 5, "value");
+
+        assertEquals("value", grid.remove(4, 5));
+        assertNull(grid.remove(4, 5));
+        assertNull(grid.get(4, 5));
+        assertFalse(grid.contains(4, 5));
+        assertTrue(grid.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void putRejectsNull() {
+        new TileGrid<String>().put(0, 0, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getRejectsTileOutsideGrid() {
+        new TileGrid<String>().get(16, 0);
+    }
+
+    @Test
+    public void tilesTrackValues() {
+        TileGrid<String> grid = new TileGrid<>();
+        grid.put(0, 0, "a");
+        grid.put(15, 15, "b");
+        grid.remove(0, 0);
+
+        TileSet expected = new TileSet();
+        expected.add(15, 15);
+        assertEquals(expected, grid.getTiles());
+    }
+
+    @Test
+    public void forEachVisitsInIndexOrder() {
+        TileGrid<String> grid = new TileGrid<>();
+        grid.put(3, 2, "c");
+        grid.put(0, 0, "a");
+        grid.put(9, 0, "b");
+
+        List<String> visited = new ArrayList<>();
+        grid.forEach((tileX, tileY, value) -> visited.add(tileX + "," + tileY + "=" + value));
+
+        assertEquals(Arrays.asList("0,0=a", "9,0=b", "3,2=c"), visited);
+    }
+
+    @Test
+    public void clearRemovesEverything() {
+        TileGrid<String> grid = new TileGrid<>();
+        grid.put(1, 1, "a");
+        grid.put(2, 2, "b");
+
+        grid.clear();
+
+        assertTrue(grid.isEmpty());
+        assertNull(grid.get(1, 1));
+        assertTrue(grid.getTiles().isEmpty());
+    }
+}
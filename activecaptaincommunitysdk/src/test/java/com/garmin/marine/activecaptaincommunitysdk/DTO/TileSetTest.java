@@ -0,0 +1,164 @@
+/*------------------------------------------------------------------------------
+Copyright 2021 Garmin Ltd. or its subsidiaries.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package com.garmin.marine.activecaptaincommunitysdk.DTO;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TileSetTest {
+    @Test
+    public void indexRoundTrips() {
+        for (int tileY = 0; tileY < TileSet.GRID_SIZE; tileY++) {
+            for (int tileX = 0; tileX < TileSet.GRID_SIZE; tileX++) {
+                int index = TileSet.index(tileX, tileY);
+                assertEquals(tileX, TileSet.tileX(index));
+                assertEquals(tileY, TileSet.tileY(index));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void indexRejectsNegativeTile() {
+        TileSet.index(-1, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void indexRejectsTileOutsideGrid() {
+        TileSet.index(0, TileSet.GRID_SIZE);
+    }
+
+    @Test
+    public void addAndRemoveReportChanges() {
+        TileSet tiles = new TileSet();
+
+        assertTrue(tiles.add(3, 4));
+        assertFalse(tiles.add(3, 4));
+        assertTrue(tiles.contains(3, 4));
+        assertEquals(1, tiles.size());
+
+        assertTrue(tiles.remove(3, 4));
+        assertFalse(tiles.remove(3, 4));
+        assertTrue(tiles.isEmpty());
+    }
+
+    @Test
+    public void holdsEveryTile() {
+        TileSet tiles = new TileSet();
+        for (int index = 0; index < TileSet.TILE_COUNT; index++) {
+            tiles.add(TileSet.tileX(index), TileSet.tileY(index));
+        }
+
+        assertEquals(TileSet.TILE_COUNT, tiles.size());
+        assertTrue(tiles.contains(15, 15));
+        assertTrue(tiles.containsIndex(63));
+        assertTrue(tiles.containsIndex(64));
+    }
+
+    @Test
+    public void nextIndexCrossesWords() {
+        TileSet tiles = new TileSet();
+        tiles.add(TileSet.tileX(5), TileSet.tileY(5));
+        tiles.add(TileSet.tileX(64), TileSet.tileY(64));
+        tiles.add(TileSet.tileX(255), TileSet.tileY(255));
+
+        assertEquals(5, tiles.nextIndex(-3));
+        assertEquals(5, tiles.nextIndex(5));
+        assertEquals(64, tiles.nextIndex(6));
+        assertEquals(255, tiles.nextIndex(65));
+        assertEquals(-1, tiles.nextIndex(256));
+        assertEquals(-1, new TileSet().nextIndex(0));
+    }
+
+    @Test
+    public void forEachVisitsInIndexOrder() {
+        TileSet tiles = new TileSet();
+        tiles.add(15, 15);
+        tiles.add(2, 0);
+        tiles.add(0, 1);
+
+        List<String> visited = new ArrayList<>();
+        tiles.forEach((tileX, tileY) -> visited.add(tileX + "," + tileY));
+
+        assertEquals(Arrays.asList("2,0", "0,1", "15,15"), visited);
+    }
+
+    @Test
+    public void setOperations() {
+        TileSet a = new TileSet();
+        a.add(0, 0);
+        a.add(1, 0);
+        a.add(8, 8);
+
+        TileSet b = new TileSet();
+        b.add(1, 0);
+        b.add(8, 8);
+        b.add(15, 15);
+
+        TileSet union = new TileSet(a);
+        union.addAll(b);
+        assertEquals(4, union.size());
+
+        TileSet intersection = new TileSet(a);
+        intersection.retainAll(b);
+        assertEquals(2, intersection.size());
+        assertTrue(intersection.contains(1, 0));
+        assertTrue(intersection.contains(8, 8));
+
+        TileSet difference = new TileSet(a);
+        difference.removeAll(b);
+        assertEquals(1, difference.size());
+        assertTrue(difference.contains(0, 0));
+
+        assertEquals(3, a.size());
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        TileSet original = new TileSet();
+        original.add(1, 1);
+
+        TileSet copy = new TileSet(original);
+        copy.add(2, 2);
+
+        assertFalse(original.contains(2, 2));
+        assertNotEquals(original, copy);
+    }
+
+    @Test
+    public void equalSetsHaveEqualHashes() {
+        TileSet a = new TileSet();
+        a.add(7, 9);
+        TileSet b = new TileSet();
+        b.add(7, 9);
+
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+
+        b.clear();
+        assertTrue(b.isEmpty());
+        assertEquals(new TileSet(), b);
+    }
+}
@@ -0,0 +1,179 @@
+/*------------------------------------------------------------------------------
+Copyright 2021 Garmin Ltd. or its subsidiaries.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package com.garmin.marine.activecaptaincommunitysdk;
+
+import com.garmin.marine.activecaptaincommunitysdk.DTO.AcdbUrlAction;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RenderCacheTest {
+    private static final RenderCache.Key KEY_A = new RenderCache.Key("acdb://summary/1", "captain", 10, true);
+    private static final RenderCache.Key KEY_B = new RenderCache.Key("acdb://summary/2", "captain", 10, true);
+    private static final RenderCache.Key KEY_C = new RenderCache.Key("acdb://summary/3", "captain", 10, true);
+
+    private static AcdbUrlAction page(String content) {
+        return new AcdbUrlAction(AcdbUrlAction.ActionType.SHOW_SUMMARY, content);
+    }
+
+    @Test
+    public void keysCompareAllFields() {
+        assertEquals(KEY_A, new RenderCache.Key("acdb://summary/1", "captain", 10, true));
+        assertEquals(KEY_A.hashCode(), new RenderCache.Key("acdb://summary/1", "captain", 10, true).hashCode());
+        assertEquals(new RenderCache.Key("acdb://summary/1", null, 10, true), new RenderCache.Key("acdb://summary/1", null, 10, true));
+
+        assertNotEquals(KEY_A, new RenderCache.Key("acdb://summary/1", "other", 10, true));
+        assertNotEquals(KEY_A, new RenderCache.Key("acdb://summary/1", "captain", 20, true));
+        assertNotEquals(KEY_A, new RenderCache.Key("acdb://summary/1", "captain", 10, false));
+    }
+
+    @Test
+    public void getCountsHitsAndMisses() {
+        RenderCache cache = new RenderCache(4);
+        AcdbUrlAction action = page("a");
+
+        assertNull(cache.get(KEY_A));
+        cache.put(KEY_A, action, cache.getGeneration());
+        assertSame(action, cache.get(KEY_A));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void containsDoesNotCount() {
+        RenderCache cache = new RenderCache(4);
+        cache.put(KEY_A, page("a"), cache.getGeneration());
+
+        assertTrue(cache.contains(KEY_A));
+        assertFalse(cache.contains(KEY_B));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        RenderCache cache = new RenderCache(2);
+        cache.put(KEY_A, page("a"), cache.getGeneration());
+        cache.put(KEY_B, page("b"), cache.getGeneration());
+        cache.get(KEY_A);
+        cache.put(KEY_C, page("c"), cache.getGeneration());
+
+        assertTrue(cache.contains(KEY_A));
+        assertFalse(cache.contains(KEY_B));
+        assertTrue(cache.contains(KEY_C));
+    }
+
+    @Test
+    public void shrinkingEvictsOldestEntries() {
+        RenderCache cache = new RenderCache(3);
+        cache.put(KEY_A, page("a"), cache.getGeneration());
+        cache.put(KEY_B, page("b"), cache.getGeneration());
+        cache.put(KEY_C, page("c"), cache.getGeneration());
+
+        cache.setCapacity(1);
+
+        assertEquals(1, cache.getCapacity());
+        assertFalse(cache.contains(KEY_A));
+        assertFalse(cache.contains(KEY_B));
+        assertTrue(cache.contains(KEY_C));
+    }
+
+    @Test
+    public void zeroCapacityStoresNothing() {
+        RenderCache cache = new RenderCache(0);
+        cache.put(KEY_A, page("a"), cache.getGeneration());
+
+        assertFalse(cache.contains(KEY_A));
+    }
+
+    @Test
+    public void invalidateEmptiesCache() {
+        RenderCache cache = new RenderCache(4);
+        cache.put(KEY_A, page("a"), cache.getGeneration());
+
+        cache.invalidate();
+
+        assertFalse(cache.contains(KEY_A));
+    }
+
+    @Test
+    public void renderStartedBeforeInvalidateIsNotStored() {
+        RenderCache cache = new RenderCache(4);
+        long generation = cache.getGeneration();
+
+        cache.invalidate();
+        cache.put(KEY_A, page("a"), generation);
+
+        assertFalse(cache.contains(KEY_A));
+    }
+
+    @Test
+    public void deferredInvalidationHappensOnResume() {
+        RenderCache cache = new RenderCache(4);
+        cache.deferInvalidation();
+        cache.put(KEY_A, page("a"), cache.getGeneration());
+
+        cache.invalidateOrDefer();
+        cache.invalidateOrDefer();
+        assertTrue(cache.contains(KEY_A));
+
+        long generation = cache.getGeneration();
+        cache.resumeInvalidation();
+        assertFalse(cache.contains(KEY_A));
+        assertNotEquals(generation, cache.getGeneration());
+    }
+
+    @Test
+    public void resumeWithoutDeferredInvalidationKeepsEntries() {
+        RenderCache cache = new RenderCache(4);
+        cache.deferInvalidation();
+        cache.put(KEY_A, page("a"), cache.getGeneration());
+
+        cache.resumeInvalidation();
+
+        assertTrue(cache.contains(KEY_A));
+    }
+
+    @Test
+    public void invalidateOrDeferInvalidatesWhenNotDeferring() {
+        RenderCache cache = new RenderCache(4);
+        cache.put(KEY_A, page("a"), cache.getGeneration());
+
+        cache.invalidateOrDefer();
+
+        assertFalse(cache.contains(KEY_A));
+    }
+
+    @Test
+    public void explicitInvalidateIsNotDeferred() {
+        RenderCache cache = new RenderCache(4);
+        cache.deferInvalidation();
+        cache.put(KEY_A, page("a"), cache.getGeneration());
+
+        cache.invalidate();
+
+        assertFalse(cache.contains(KEY_A));
+    }
+}
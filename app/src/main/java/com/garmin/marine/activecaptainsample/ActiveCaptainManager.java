@@ -23,7 +23,10 @@ import android.text.format.DateUtils;
 import android.util.Log;
 
 import com.garmin.marine.activecaptaincommunitysdk.ActiveCaptainDatabase;
-import com.garmin.marine.activecaptaincommunitysdk.DTO.LastUpdateInfoType;
+import com.garmin.marine.activecaptaincommunitysdk.DTO.SyncPageResult;
+import com.garmin.marine.activecaptaincommunitysdk.DTO.TileLastModifiedList;
+import com.garmin.marine.activecaptaincommunitysdk.DTO.TileGrid;
+import com.garmin.marine.activecaptaincommunitysdk.DTO.TileSet;
 import com.garmin.marine.activecaptaincommunitysdk.DTO.TileXY;
 import com.garmin.marine.activecaptainsample.contract.BoundingBox;
 import com.garmin.marine.activecaptainsample.contract.TileCoordinate;
@@ -34,24 +37,28 @@ import com.garmin.marine.activecaptainsample.contract.response.SyncStatusRespons
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.Response;
 
 public class ActiveCaptainManager {
-    private static class SingletonHolder {
-        private static final ActiveCaptainManager INSTANCE = new ActiveCaptainManager();
-    }
+    private static ActiveCaptainManager instance;
 
     private static final int SYNC_MAX_RESULT_COUNT = 100;
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 5;
     private static final String JWT_KEY = "JWT";
 
     private static String basePath;
@@ -61,10 +68,17 @@ public class ActiveCaptainManager {
     private String captainName;
     private final ActiveCaptainDatabase database;
     private final ExportDownloader exportDownloader;
-    private List<BoundingBox> boundingBoxes;
+    private volatile List<BoundingBox> boundingBoxes;
+    private volatile BoundingBox.Coordinate position;
+    private volatile TileXY priorityTile;
+    private final TileGrid<SyncStatusResponse> pendingTileSyncs = new TileGrid<>();
 
     private Runnable updateTask;
     private final Handler updateHandler;
+    private boolean stopped = false;
+    private final ExecutorService syncExecutor;
+    private final ExecutorService writeExecutor;
+    private final ExecutorService tileQueueExecutor;
 
     private enum SyncResult {
         SUCCESS,
@@ -81,7 +95,7 @@ public class ActiveCaptainManager {
             throw new IllegalArgumentException("sharedPreferences must not be null.");
         }
 
-        database = new ActiveCaptainDatabase(new File(basePath, "active_captain.db"), ActiveCaptainConfiguration.languageCode);
+        database = new ActiveCaptainDatabase(new File(basePath, "active_captain.db"), ActiveCaptainConfiguration.languageCode, ActiveCaptainConfiguration.DATABASE_READ_CONNECTIONS);
 
         apiInterface = ActiveCaptainApiClient.getClient().create(ActiveCaptainApiInterface.class);
         boundingBoxes = new LinkedList<>();
@@ -93,6 +107,9 @@ public class ActiveCaptainManager {
         HandlerThread updateThread = new HandlerThread("UpdateThread");
         updateThread.start();
         updateHandler = new Handler(updateThread.getLooper());
+        syncExecutor = Executors.newFixedThreadPool(ActiveCaptainConfiguration.SYNC_PARALLELISM);
+        writeExecutor = Executors.newSingleThreadExecutor();
+        tileQueueExecutor = Executors.newSingleThreadExecutor();
         updateTask = () -> {
             updateData();
             updateHandler.postDelayed(updateTask, ActiveCaptainConfiguration.UPDATE_INTERVAL_MINS * DateUtils.MINUTE_IN_MILLIS);
@@ -134,8 +151,28 @@ public class ActiveCaptainManager {
         return database;
     }
 
-    public static ActiveCaptainManager getInstance() {
-        return SingletonHolder.INSTANCE;
+    public static synchronized ActiveCaptainManager getInstance() {
+        if (instance == null) {
+            instance = new ActiveCaptainManager();
+        }
+
+        return instance;
+    }
+
+    // Stops automatic updates and the background threads, and closes the database.  The next
+    // call to getInstance() creates a new manager.  Returns at once, the manager stops on its
+    // update thread once any update in progress has finished.
+    public static void shutdown() {
+        ActiveCaptainManager manager;
+        synchronized (ActiveCaptainManager.class) {
+            manager = instance;
+            instance = null;
+        }
+
+        if (manager != null) {
+            manager.updateHandler.removeCallbacks(manager.updateTask);
+            manager.updateHandler.post(manager::stop);
+        }
     }
 
     public String getJwt() {
@@ -181,32 +218,52 @@ public class ActiveCaptainManager {
         }
     }
 
+    // The queued tiles are re-ranked and pruned on tileQueueExecutor, because the database lookups
+    // can wait behind installs and sync writes.  The sync executor is not used, its threads are
+    // busy working through the queue for the whole sync.
     public void setBoundingBoxes(List<BoundingBox> boundingBoxes) {
         this.boundingBoxes = boundingBoxes;
+
+        tileQueueExecutor.execute(() -> {
+            if (position == null) {
+                updatePriorityTile(false);
+            }
+
+            pruneTileQueue();
+        });
+    }
+
+    /**
+     * Set the vessel position.  Tiles nearest the position are synced first.  If no position is
+     * set, tiles nearest the center of the first bounding box are synced first.
+     */
+    public void setPosition(double latitude, double longitude) {
+        position = new BoundingBox.Coordinate(latitude, longitude);
+
+        tileQueueExecutor.execute(() -> updatePriorityTile(false));
     }
 
     public void setJwt(String jwt) {
         sharedPreferences.edit().putString(JWT_KEY, jwt).apply();
     }
 
-    public void updateData() {
+    // Synchronized so shutdown waits for an update running on another thread.
+    public synchronized void updateData() {
         Log.d("ActiveCaptainManager", "UpdateData called");
 
-        if (boundingBoxes.isEmpty()) {
+        if (stopped || boundingBoxes.isEmpty()) {
             return;
         }
 
-        HashMap<TileXY, LastUpdateInfoType> lastUpdateInfos = new HashMap<>();
-        for (BoundingBox boundingBox : boundingBoxes) {
-            HashMap<TileXY, LastUpdateInfoType> bboxLastUpdateInfos = database.getTilesLastModifiedByBoundingBox(boundingBox.southwestCorner.latitude, boundingBox.southwestCorner.longitude, boundingBox.northeastCorner.latitude, boundingBox.northeastCorner.longitude);
-            if (bboxLastUpdateInfos != null) {
-                lastUpdateInfos.putAll(bboxLastUpdateInfos);
-            }
+        if (priorityTile == null) {
+            updatePriorityTile(true);
         }
 
+        TileLastModifiedList lastModifiedList = database.getTilesLastModified(toBoxArray(boundingBoxes));
+
         List<SyncStatusRequest> tileRequests = new LinkedList<>();
 
-        if (lastUpdateInfos.isEmpty()) {
+        if (lastModifiedList == null || lastModifiedList.count == 0) {
             // Database not present, need to get tiles from API.
             Call<List<TileCoordinate>> tileCall = apiInterface.getTiles(boundingBoxes);
             try {
@@ -220,47 +277,69 @@ public class ActiveCaptainManager {
                 Log.e("Error: ", "Failed to get tiles for bounding box, " + e.getMessage());
             }
         } else {
-            for (Map.Entry<TileXY, LastUpdateInfoType> entry : lastUpdateInfos.entrySet()) {
-                tileRequests.add(new SyncStatusRequest(entry.getKey().tileX, entry.getKey().tileY, entry.getValue().markerLastUpdate, entry.getValue().reviewLastUpdate));
+            for (int i = 0; i < lastModifiedList.count; i++) {
+                tileRequests.add(new SyncStatusRequest(lastModifiedList.tileX[i], lastModifiedList.tileY[i],
+                        ActiveCaptainDatabase.formatLastModified(lastModifiedList.markerLastModified[i]),
+                        ActiveCaptainDatabase.formatLastModified(lastModifiedList.reviewLastModified[i])));
             }
         }
 
-        Set<TileCoordinate> exportTileList = new HashSet<>();
+        TileSet exportTileList = new TileSet();
 
         Call<List<SyncStatusResponse>> call = apiInterface.getSyncStatus(database.getVersion(), tileRequests);
         try {
             Response<List<SyncStatusResponse>> response = call.execute();
             if (response.isSuccessful() && response.body() != null) {
-                for (SyncStatusResponse tileResponse : response.body()) {
-                    TileCoordinate tileCoordinate = new TileCoordinate(tileResponse.TileX, tileResponse.TileY);
+                synchronized (pendingTileSyncs) {
+                    pendingTileSyncs.clear();
+                    for (SyncStatusResponse tileResponse : response.body()) {
+                        pendingTileSyncs.put(tileResponse.TileX, tileResponse.TileY, tileResponse);
+                    }
+                }
 
-                    switch (tileResponse.PoiUpdateType) {
-                        case Sync:
-                            if (syncTileMarkers(tileCoordinate) == SyncResult.EXPORT_REQUIRED) {
-                                exportTileList.add(tileCoordinate);
+                // Tiles sync concurrently, up to SYNC_PARALLELISM at a time.  Each tile's markers
+                // and reviews are still processed in order, on the writer thread.  Workers take the
+                // tile nearest the priority tile as they become free, so a position change re-ranks
+                // the tiles not yet started, and tiles dropped by setBoundingBoxes are skipped.
+                // Syncing to storage is deferred until all tiles are done.  Pages are still
+                // committed one at a time, so pages processed before a failure are kept.
+                database.beginDeferredSync();
+                try {
+                    List<Future<?>> tileSyncs = new ArrayList<>();
+                    for (int i = 0; i < ActiveCaptainConfiguration.SYNC_PARALLELISM; i++) {
+                        tileSyncs.add(syncExecutor.submit(() -> {
+                            SyncStatusResponse tileResponse;
+                            while ((tileResponse = takeNextTileSync()) != null) {
+                                syncTile(tileResponse, exportTileList);
                             }
-                            break;
-                        case Export:
-                            exportTileList.add(tileCoordinate);
-                            break;
-                        case Delete:
-                            database.deleteTile(tileCoordinate.tileX, tileCoordinate.tileY);
-                            break;
+                        }));
                     }
 
-                    switch (tileResponse.ReviewUpdateType) {
-                        case Sync:
-                            if (syncTileReviews(tileCoordinate) == SyncResult.EXPORT_REQUIRED) {
-                                exportTileList.add(tileCoordinate);
+                    // If interrupted, no further tiles are started, but the tiles in progress are
+                    // waited for, so their writes finish before the deferred sync ends.
+                    boolean interrupted = false;
+                    for (Future<?> tileSync : tileSyncs) {
+                        while (true) {
+                            try {
+                                tileSync.get();
+                                break;
+                            } catch (ExecutionException e) {
+                                Log.e("Error: ", "Failed to sync tile, " + e.getCause());
+                                break;
+                            } catch (InterruptedException e) {
+                                interrupted = true;
+                                synchronized (pendingTileSyncs) {
+                                    pendingTileSyncs.clear();
+                                }
                             }
-                            break;
-                        case Export:
-                            exportTileList.add(tileCoordinate);
-                            break;
-                        case Delete:
-                            database.deleteTileReviews(tileCoordinate.tileX, tileCoordinate.tileY);
-                            break;
+                        }
                     }
+
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                } finally {
+                    database.endDeferredSync();
                 }
             }
         } catch (IOException e) {
@@ -269,15 +348,39 @@ public class ActiveCaptainManager {
 
         if (!exportTileList.isEmpty()) {
             exportTiles(exportTileList);
-
-            // Reinitialize translations, as they may have been updated.
-            database.setLanguage(ActiveCaptainConfiguration.languageCode);
             Log.d("ActiveCaptainManager", "Update complete, exports installed.");
         } else {
             Log.d("ActiveCaptainManager", "Update complete, no exports.");
         }
     }
 
+    // Runs on the update thread.  The tile queue is stopped first, then the other threads and the
+    // database once any update running on another thread has finished.
+    private void stop() {
+        tileQueueExecutor.shutdownNow();
+
+        synchronized (this) {
+            stopped = true;
+            syncExecutor.shutdownNow();
+            writeExecutor.shutdownNow();
+            exportDownloader.shutdown();
+
+            try {
+                tileQueueExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            try {
+                database.close();
+            } catch (IOException e) {
+                Log.e("Error: ", "Failed to close database, " + e.getMessage());
+            }
+        }
+
+        updateHandler.getLooper().quitSafely();
+    }
+
     public void voteForReview(long reviewId) {
         if (getJwt() != null) {
             Call<ResponseBody> call = apiInterface.voteForReview(reviewId, "Bearer " + getJwt());
@@ -292,12 +395,10 @@ public class ActiveCaptainManager {
         }
     }
 
-    private void exportTiles(Set<TileCoordinate> tileList) {
+    private void exportTiles(TileSet tileList) {
         List<TileCoordinate> tileRequests = new ArrayList<>();
 
-        for (TileCoordinate tile : tileList) {
-            tileRequests.add(new TileCoordinate(tile.tileX, tile.tileY));
-        }
+        tileList.forEach((tileX, tileY) -> tileRequests.add(new TileCoordinate(tileX, tileY)));
 
         Call<List<ExportResponse>> call = apiInterface.getExports(tileRequests);
         try {
@@ -313,22 +414,197 @@ public class ActiveCaptainManager {
         }
     }
 
+    // The page is passed to native code as raw UTF-8 bytes, rather than decoded into a String.
+    private SyncPageResult ingestSyncResponse(ResponseBody body, TileCoordinate tile, boolean reviews) throws IOException {
+        byte[] json = body.bytes();
+
+        if (reviews) {
+            return write(() -> database.processSyncReviewsPage(json, json.length, tile.tileX, tile.tileY));
+        } else {
+            return write(() -> database.processSyncMarkersPage(json, json.length, tile.tileX, tile.tileY));
+        }
+    }
+
+    private void syncTile(SyncStatusResponse tileResponse, TileSet exportTileList) {
+        TileCoordinate tileCoordinate = new TileCoordinate(tileResponse.TileX, tileResponse.TileY);
+        boolean exportRequired = false;
+
+        try {
+            switch (tileResponse.PoiUpdateType) {
+                case Sync:
+                    exportRequired = syncTileMarkers(tileCoordinate) == SyncResult.EXPORT_REQUIRED;
+                    break;
+                case Export:
+                    exportRequired = true;
+                    break;
+                case Delete:
+                    write(() -> {
+                        database.deleteTile(tileCoordinate.tileX, tileCoordinate.tileY);
+                        return null;
+                    });
+                    break;
+            }
+
+            switch (tileResponse.ReviewUpdateType) {
+                case Sync:
+                    exportRequired |= syncTileReviews(tileCoordinate) == SyncResult.EXPORT_REQUIRED;
+                    break;
+                case Export:
+                    exportRequired = true;
+                    break;
+                case Delete:
+                    write(() -> {
+                        database.deleteTileReviews(tileCoordinate.tileX, tileCoordinate.tileY);
+                        return null;
+                    });
+                    break;
+            }
+        } catch (IOException e) {
+            Log.e("Error: ", "Failed to update tile " + tileCoordinate.tileX + " " + tileCoordinate.tileY + ", " + e.getMessage());
+        }
+
+        if (exportRequired) {
+            synchronized (exportTileList) {
+                exportTileList.add(tileCoordinate.tileX, tileCoordinate.tileY);
+            }
+        }
+    }
+
+    private SyncStatusResponse takeNextTileSync() {
+        synchronized (pendingTileSyncs) {
+            TileSet tiles = pendingTileSyncs.getTiles();
+            TileXY center = priorityTile;
+            int nextIndex = -1;
+            int nextDistance = Integer.MAX_VALUE;
+
+            for (int index = tiles.nextIndex(0); index >= 0; index = tiles.nextIndex(index + 1)) {
+                int distance = center != null ? tileDistance(TileSet.tileX(index), TileSet.tileY(index), center) : 0;
+                if (distance < nextDistance) {
+                    nextIndex = index;
+                    nextDistance = distance;
+                }
+            }
+
+            if (nextIndex < 0) {
+                return null;
+            }
+
+            return pendingTileSyncs.remove(TileSet.tileX(nextIndex), TileSet.tileY(nextIndex));
+        }
+    }
+
+    // Squared distance in tiles.  Tile X wraps around at the antimeridian.
+    private static int tileDistance(int tileX, int tileY, TileXY center) {
+        int dx = Math.abs(tileX - center.tileX);
+        dx = Math.min(dx, TileSet.GRID_SIZE - dx);
+        int dy = tileY - center.tileY;
+
+        return dx * dx + dy * dy;
+    }
+
+    // Drop queued tiles outside the current bounding boxes.  If the database has no tiles yet, the
+    // new coverage is unknown and the queue is left alone.
+    private void pruneTileQueue() {
+        TileLastModifiedList lastModifiedList = database.getTilesLastModified(toBoxArray(boundingBoxes));
+        if (lastModifiedList == null) {
+            return;
+        }
+
+        TileSet coveredTiles = lastModifiedList.getTiles();
+        if (!coveredTiles.isEmpty()) {
+            synchronized (pendingTileSyncs) {
+                TileSet droppedTiles = new TileSet(pendingTileSyncs.getTiles());
+                droppedTiles.removeAll(coveredTiles);
+                droppedTiles.forEach(pendingTileSyncs::remove);
+            }
+        }
+    }
+
+    private void updatePriorityTile(boolean allowNetwork) {
+        BoundingBox.Coordinate center = position;
+        if (center == null) {
+            List<BoundingBox> boxes = boundingBoxes;
+            if (boxes.isEmpty()) {
+                return;
+            }
+
+            BoundingBox box = boxes.get(0);
+            center = new BoundingBox.Coordinate((box.southwestCorner.latitude + box.northeastCorner.latitude) / 2,
+                    (box.southwestCorner.longitude + box.northeastCorner.longitude) / 2);
+        }
+
+        priorityTile = findTile(center.latitude, center.longitude, allowNetwork);
+    }
+
+    // Look up the tile containing a point in the database, falling back to the API if the
+    // database does not have it and network access is allowed.
+    private TileXY findTile(double latitude, double longitude, boolean allowNetwork) {
+        TileLastModifiedList tiles = database.getTilesLastModified(new double[]{latitude, longitude, latitude, longitude});
+        if (tiles != null && tiles.count > 0) {
+            return new TileXY(tiles.tileX[0], tiles.tileY[0]);
+        }
+
+        if (allowNetwork) {
+            Call<List<TileCoordinate>> tileCall = apiInterface.getTiles(Collections.singletonList(new BoundingBox(latitude, longitude, latitude, longitude)));
+            try {
+                Response<List<TileCoordinate>> response = tileCall.execute();
+                if (response.isSuccessful() && response.body() != null && !response.body().isEmpty()) {
+                    return new TileXY(response.body().get(0).tileX, response.body().get(0).tileY);
+                }
+            } catch (IOException e) {
+                Log.e("Error: ", "Failed to get tile for position, " + e.getMessage());
+            }
+        }
+
+        return null;
+    }
+
+    private static double[] toBoxArray(List<BoundingBox> boundingBoxes) {
+        double[] boxes = new double[boundingBoxes.size() * 4];
+        int boxIndex = 0;
+        for (BoundingBox boundingBox : boundingBoxes) {
+            boxes[boxIndex++] = boundingBox.southwestCorner.latitude;
+            boxes[boxIndex++] = boundingBox.southwestCorner.longitude;
+            boxes[boxIndex++] = boundingBox.northeastCorner.latitude;
+            boxes[boxIndex++] = boundingBox.northeastCorner.longitude;
+        }
+
+        return boxes;
+    }
+
+    // All sync writes run on a single thread, so concurrent tile syncs never contend for the
+    // database's writer connection.
+    private <T> T write(Callable<T> task) throws IOException {
+        try {
+            return writeExecutor.submit(task).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for database write.");
+        }
+    }
+
     private SyncResult syncTileMarkers(TileCoordinate tile) {
         SyncResult result = SyncResult.FAIL;
 
+        // Later cursors come back from ingesting each page.
+        String nextLastModifiedAfter = database.getTileLastModified(tile.tileX, tile.tileY).markerLastUpdate;
         String lastModifiedAfter = "";
         int resultCount = 0;
 
         do {
-            LastUpdateInfoType lastUpdateInfo = database.getTileLastModified(tile.tileX, tile.tileY);
-
-            if (lastModifiedAfter.equals(lastUpdateInfo.markerLastUpdate)) {
+            if (Objects.equals(lastModifiedAfter, nextLastModifiedAfter)) {
                 // Sanity check -- if lastModifiedAfter would be the same for multiple calls, break
                 // out of the loop.  The API would return the same markers.
                 break;
             }
 
-            lastModifiedAfter = lastUpdateInfo.markerLastUpdate;
+            lastModifiedAfter = nextLastModifiedAfter;
 
             Call<ResponseBody> call = apiInterface.syncMarkers(tile.tileX, tile.tileY, lastModifiedAfter);
 
@@ -336,7 +612,9 @@ public class ActiveCaptainManager {
                 Response<ResponseBody> response = call.execute();
                 if (response.isSuccessful() && response.body() != null) {
                     try {
-                        resultCount = database.processSyncMarkersResponse(response.body().string(), tile.tileX, tile.tileY);
+                        SyncPageResult page = ingestSyncResponse(response.body(), tile, false);
+                        resultCount = page.resultCount;
+                        nextLastModifiedAfter = ActiveCaptainDatabase.formatLastModified(page.lastModified);
                         result = SyncResult.SUCCESS;
                     } catch (IOException e) {
                         Log.e("Error: ", "Failed to read marker sync response, " + response.code() + " " + response.message());
@@ -359,19 +637,19 @@ public class ActiveCaptainManager {
     private SyncResult syncTileReviews(TileCoordinate tile) {
         SyncResult result = SyncResult.FAIL;
 
+        // Later cursors come back from ingesting each page.
+        String nextLastModifiedAfter = database.getTileLastModified(tile.tileX, tile.tileY).reviewLastUpdate;
         String lastModifiedAfter = "";
         int resultCount = 0;
 
         do {
-            LastUpdateInfoType lastUpdateInfo = database.getTileLastModified(tile.tileX, tile.tileY);
-
-            if (lastModifiedAfter.equals(lastUpdateInfo.reviewLastUpdate)) {
+            if (Objects.equals(lastModifiedAfter, nextLastModifiedAfter)) {
                 // Sanity check -- if lastModifiedAfter would be the same for multiple calls, break
                 // out of the loop.  The API would return the same markers.
                 break;
             }
 
-            lastModifiedAfter = lastUpdateInfo.reviewLastUpdate;
+            lastModifiedAfter = nextLastModifiedAfter;
 
             Call<ResponseBody> call = apiInterface.syncReviews(tile.tileX, tile.tileY, lastModifiedAfter);
 
@@ -379,7 +657,9 @@ public class ActiveCaptainManager {
                 Response<ResponseBody> response = call.execute();
                 if (response.isSuccessful() && response.body() != null) {
                     try {
-                        resultCount = database.processSyncReviewsResponse(response.body().string(), tile.tileX, tile.tileY);
+                        SyncPageResult page = ingestSyncResponse(response.body(), tile, true);
+                        resultCount = page.resultCount;
+                        nextLastModifiedAfter = ActiveCaptainDatabase.formatLastModified(page.lastModified);
                         result = SyncResult.SUCCESS;
                     } catch (IOException e) {
                         Log.e("Error: ", "Failed to read review sync response, " + response.code() + " " + response.message());
@@ -19,24 +19,34 @@ package com.garmin.marine.activecaptainsample;
 import android.util.Log;
 
 import com.garmin.marine.activecaptaincommunitysdk.ActiveCaptainDatabase;
+import com.garmin.marine.activecaptaincommunitysdk.DTO.TileInstallStats;
 import com.garmin.marine.activecaptainsample.contract.response.ExportResponse;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
-import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class ExportDownloader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private final String basePath;
     private final ActiveCaptainDatabase database;
+    private final ExecutorService downloadExecutor;
 
     public ExportDownloader(ActiveCaptainDatabase database, String basePath) {
         if (database == null) {
@@ -49,85 +59,287 @@ public class ExportDownloader {
 
         this.database = database;
         this.basePath = basePath;
+        this.downloadExecutor = Executors.newFixedThreadPool(ActiveCaptainConfiguration.EXPORT_DOWNLOAD_PARALLELISM);
     }
 
+    // Tiles download in parallel, up to EXPORT_DOWNLOAD_PARALLELISM at a time.  The tiles that
+    // download successfully are then installed as one batch, so the map never shows a partly
+    // installed export and searches are not blocked while tiles merge.  Returns when the tiles are
+    // installed or have failed.
     public final void download(List<ExportResponse> exports) {
+        List<Future<File>> downloads = new ArrayList<>();
+        for (ExportResponse export : exports) {
+            downloads.add(downloadExecutor.submit(() -> downloadTile(export)));
+        }
+
+        List<ExportResponse> downloadedExports = new ArrayList<>();
+        List<File> partFiles = new ArrayList<>();
+
+        for (int i = 0; i < downloads.size(); i++) {
+            try {
+                partFiles.add(downloads.get(i).get());
+                downloadedExports.add(exports.get(i));
+            } catch (ExecutionException e) {
+                Log.e("Error: ", e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                for (Future<File> pendingDownload : downloads) {
+                    pendingDownload.cancel(true);
+                }
+
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        if (partFiles.isEmpty()) {
+            return;
+        }
+
+        String[] paths = new String[partFiles.size()];
+        int[] tileX = new int[partFiles.size()];
+        int[] tileY = new int[partFiles.size()];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = partFiles.get(i).getPath();
+            tileX[i] = downloadedExports.get(i).tileX;
+            tileY[i] = downloadedExports.get(i).tileY;
+        }
+
         try {
-            for (ExportResponse export : exports) {
-                Log.d("ExportDownloader", "Downloading: " + export.gzip.url);
-                URL url = new URL(export.gzip.url);
-                URLConnection connection = url.openConnection();
-                connection.connect();
+            Log.d("ExportDownloader", "Installing " + paths.length + " tiles");
+            for (TileInstallStats stats : database.installCompressedTiles(paths, tileX, tileY)) {
+                Log.d("ExportDownloader", "Installed: " + stats);
+            }
+
+            for (File partFile : partFiles) {
+                partFile.delete();
+                metaFileFor(partFile).delete();
+            }
+        } catch (IOException e) {
+            // The verified downloads are kept, the next update installs them without downloading
+            // them again.
+            Log.e("Error: ", e.getMessage());
+        }
+    }
 
-                File outputFile = new File(basePath, "active_captain_" + export.tileX + "_" + export.tileY + ".db");
-                File gzipFile = new File(basePath, "active_captain_" + export.tileX + "_" + export.tileY + ".db.gz");
+    // Cancels downloads in progress.  download must not be called afterwards.
+    public void shutdown() {
+        downloadExecutor.shutdownNow();
+    }
 
-                InputStream input = new BufferedInputStream(url.openStream(), 8192);
+    // The compressed body is kept in a .part file as it arrives, next to a .meta file with the
+    // expected size and MD5 hash.  If the connection drops, the next download of the same export
+    // re-hashes the bytes already received and requests only the rest with a Range header.
+    // Returns the .part file once its size and hash are verified, the database installs it
+    // without decompressing it first.
+    private File downloadTile(ExportResponse export) throws Exception {
+        File partFile = new File(basePath, "active_captain_" + export.tileX + "_" + export.tileY + ".db.gz.part");
+        File metaFile = metaFileFor(partFile);
 
-                OutputStream output = new FileOutputStream(gzipFile);
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        String meta = export.gzip.fileSize + "\n" + export.gzip.md5Hash + "\n";
+        long offset = resumeOffset(partFile, metaFile, meta, export.gzip.fileSize, digest);
 
-                int count;
-                byte[] data = new byte[1024];
-                long total = 0;
-                MessageDigest digest = MessageDigest.getInstance("MD5");
+        if (offset == 0) {
+            partFile.delete();
+            try (OutputStream output = new FileOutputStream(metaFile)) {
+                output.write(meta.getBytes(StandardCharsets.UTF_8));
+            }
+        }
 
-                // Download compressed data.
-                while ((count = input.read(data)) > 0) {
-                    total += count;
+        long total = offset;
+        if (offset < export.gzip.fileSize) {
+            Log.d("ExportDownloader", "Downloading: " + export.gzip.url + (offset > 0 ? " from byte " + offset : ""));
+            HttpURLConnection connection = openConnection(export.gzip.url, offset);
 
-                    // Update MD5 hash of the compressed data.
-                    digest.update(data, 0, count);
+            // If the connection drops, the .part file is kept and the next download resumes from it.
+            try {
+                int responseCode = connection.getResponseCode();
 
-                    // Write the GZip file.
-                    output.write(data, 0, count);
-                }
+                // Appending a range other than the one requested would corrupt the file, and that
+                // would only be caught by the hash check once the whole body has arrived.  Checked
+                // manually against a local server that answers a resumed request with
+                // "206, Content-Range: bytes 0-": the download restarts from byte 0 and the MD5
+                // hash matches.
+                if (responseCode == HttpURLConnection.HTTP_PARTIAL && contentRangeStart(connection.getHeaderField("Content-Range")) != offset) {
+                    if (offset == 0) {
+                        throw new IOException("Export download failed: " + export.tileX + " " + export.tileY + ", unexpected Content-Range " + connection.getHeaderField("Content-Range"));
+                    }
 
-                output.flush();
+                    Log.d("ExportDownloader", "Range mismatch, restarting: " + export.gzip.url);
+                    connection.disconnect();
 
-                output.close();
-                input.close();
+                    offset = 0;
+                    total = 0;
+                    digest.reset();
 
-                // Confirm the entire file was downloaded.
-                if (total != export.gzip.fileSize) {
-                    throw new Exception("File size mismatch: " + export.tileX + " " + export.tileY + ", " + "Expected: " + export.gzip.fileSize + ", Actual: " + total);
+                    connection = openConnection(export.gzip.url, offset);
+                    responseCode = connection.getResponseCode();
+
+                    if (responseCode == HttpURLConnection.HTTP_PARTIAL && contentRangeStart(connection.getHeaderField("Content-Range")) != 0) {
+                        throw new IOException("Export download failed: " + export.tileX + " " + export.tileY + ", unexpected Content-Range " + connection.getHeaderField("Content-Range"));
+                    }
                 }
 
-                // Confirm MD5 hash of file contents matches expected value.
-                byte[] md5Bytes = digest.digest();
-                StringBuilder md5 = new StringBuilder();
-                for (byte b : md5Bytes) {
-                    md5.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+                if (responseCode == HttpURLConnection.HTTP_OK && offset > 0) {
+                    // Range not supported, the whole body is being sent again.
+                    offset = 0;
+                    total = 0;
+                    digest.reset();
+                } else if (responseCode != HttpURLConnection.HTTP_OK && responseCode != HttpURLConnection.HTTP_PARTIAL) {
+                    throw new IOException("Export download failed: " + export.tileX + " " + export.tileY + ", " + responseCode + " " + connection.getResponseMessage());
                 }
 
-                if (!md5.toString().equals(export.gzip.md5Hash)) {
-                    throw new Exception("MD5 hash mismatch: " + export.tileX + " " + export.tileY + ", " + "Expected: " + export.gzip.md5Hash + ", Actual: " + md5);
+                try (InputStream input = connection.getInputStream();
+                     OutputStream partOutput = new FileOutputStream(partFile, offset > 0)) {
+                    TeeInputStream tee = new TeeInputStream(new DigestInputStream(input, digest), partOutput);
+
+                    byte[] data = new byte[BUFFER_SIZE];
+                    while (tee.read(data) >= 0) {
+                    }
+
+                    total += tee.total;
                 }
+            } finally {
+                connection.disconnect();
+            }
+        } else {
+            Log.d("ExportDownloader", "Already downloaded: " + export.gzip.url);
+        }
+
+        // A body that ends early is an interrupted download, keep the .part file.
+        if (total < export.gzip.fileSize) {
+            throw new IOException("Export download incomplete: " + export.tileX + " " + export.tileY + ", " + "Expected: " + export.gzip.fileSize + ", Actual: " + total);
+        }
 
-                decompressFile(gzipFile, outputFile);
-                gzipFile.delete();
+        try {
+            // Confirm the entire file was downloaded.
+            if (total != export.gzip.fileSize) {
+                throw new Exception("File size mismatch: " + export.tileX + " " + export.tileY + ", " + "Expected: " + export.gzip.fileSize + ", Actual: " + total);
+            }
 
-                Log.d("ExportDownloader", "Installing: " + export.tileX + " " + export.tileY + " " + outputFile.getPath());
-                database.installTile(outputFile.getPath(), export.tileX, export.tileY);
+            // Confirm MD5 hash of file contents matches expected value.
+            String md5 = toHex(digest.digest());
+            if (!md5.equals(export.gzip.md5Hash)) {
+                throw new Exception("MD5 hash mismatch: " + export.tileX + " " + export.tileY + ", " + "Expected: " + export.gzip.md5Hash + ", Actual: " + md5);
             }
         } catch (Exception e) {
-            Log.e("Error: ", e.getMessage());
+            // Not worth resuming.
+            partFile.delete();
+            metaFile.delete();
+            throw e;
+        }
+
+        return partFile;
+    }
+
+    private static HttpURLConnection openConnection(String url, long offset) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (offset > 0) {
+            connection.setRequestProperty("Range", "bytes=" + offset + "-");
+        }
+
+        return connection;
+    }
+
+    // Returns the first byte position of a "bytes first-last/length" Content-Range header, or -1
+    // if the header is missing or malformed.
+    static long contentRangeStart(String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return -1;
+        }
+
+        int dash = contentRange.indexOf('-');
+        if (dash < 0) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(contentRange.substring("bytes ".length(), dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static File metaFileFor(File partFile) {
+        return new File(partFile.getPath() + ".meta");
+    }
+
+    // Returns the number of bytes already downloaded for this export, after adding them to digest.
+    // Returns 0 if there is no partial download, or if it belongs to a different export.
+    private static long resumeOffset(File partFile, File metaFile, String meta, long fileSize, MessageDigest digest) throws IOException {
+        if (!partFile.exists() || !metaFile.exists() || partFile.length() > fileSize) {
+            return 0;
+        }
+
+        byte[] savedMeta = new byte[(int) metaFile.length()];
+        try (InputStream input = new FileInputStream(metaFile)) {
+            if (input.read(savedMeta) != savedMeta.length || !meta.equals(new String(savedMeta, StandardCharsets.UTF_8))) {
+                return 0;
+            }
         }
+
+        long offset = 0;
+        try (InputStream input = new FileInputStream(partFile)) {
+            int count;
+            byte[] data = new byte[BUFFER_SIZE];
+
+            while ((count = input.read(data)) > 0) {
+                digest.update(data, 0, count);
+                offset += count;
+            }
+        }
+
+        return offset;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+        }
+
+        return hex.toString();
     }
 
-    private void decompressFile(File compressedFile, File decompressedFile) throws IOException {
-        InputStream input = new FileInputStream(compressedFile);
-        OutputStream output = new FileOutputStream(decompressedFile);
-        GZIPInputStream gzipInputStream = new GZIPInputStream(input);
+    // Counts the bytes read and copies them to an output stream.
+    private static class TeeInputStream extends FilterInputStream {
+        private final OutputStream output;
+        long total = 0;
 
-        int count;
-        byte[] data = new byte[1024];
+        TeeInputStream(InputStream input, OutputStream output) {
+            super(input);
+            this.output = output;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                output.write(b);
+                total++;
+            }
 
-        while ((count = gzipInputStream.read(data)) > 0) {
-            output.write(data, 0, count);
+            return b;
         }
 
-        output.flush();
-        output.close();
-        input.close();
+        @Override
+        public int read(byte[] data, int offset, int length) throws IOException {
+            int count = super.read(data, offset, length);
+            if (count > 0) {
+                output.write(data, offset, count);
+                total += count;
+            }
+
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Read instead of skipping, so skipped bytes are still hashed and saved.
+            byte[] data = new byte[(int) Math.min(n, BUFFER_SIZE)];
+            int count = read(data, 0, data.length);
+
+            return Math.max(count, 0);
+        }
     }
-}
\ No newline at end of file
+}
@@ -37,12 +37,12 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.webkit.WebViewAssetLoader;
 import androidx.webkit.WebViewAssetLoader.AssetsPathHandler;
 
+import com.garmin.marine.activecaptaincommunitysdk.ActiveCaptainDatabase;
 import com.garmin.marine.activecaptaincommunitysdk.DTO.AcdbUrlAction;
 import com.garmin.marine.activecaptainsample.contract.BoundingBox;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -70,6 +70,7 @@ public class MainActivity extends AppCompatActivity {
 
     private long markerId = 533549;
     private WebView mWebView;
+    private final ExecutorService startupExecutor = Executors.newSingleThreadExecutor();
 
     @SuppressLint("SetJavaScriptEnabled")
     @Override
@@ -98,27 +99,26 @@ public class MainActivity extends AppCompatActivity {
             }
 
             private boolean handleUrl(final Uri uri) {
-                AcdbUrlAction action = ActiveCaptainManager.getInstance().getDatabase().parseAcdbUrl(uri.toString(), ActiveCaptainManager.getInstance().getCaptainName(), ActiveCaptainConfiguration.REVIEW_LIST_PAGE_SIZE);
-                if (action != null) {
-                    if (uri.getScheme().equals("acdb")) {
-                        switch (action.action) {
-                            case EDIT:
-                                // Fallthrough is intentional.
-                            case REPORT_REVIEW: {
-                                String jwt = ActiveCaptainManager.getInstance().getJwt();
-                                if (jwt != null && !jwt.isEmpty()) {
-                                    Intent intent = new Intent(getApplicationContext(), WebViewActivity.class);
-                                    intent.putExtra(WebViewActivity.WEBVIEW_URL, action.content);
-                                    intent.putExtra(WebViewActivity.JWT, jwt);
-                                    startActivityForResult(intent, LaunchActivity.WEBVIEW_ACTIVITY.getValue());
-
-                                    return true;
-                                }
-                                break;
+                if (uri.getScheme().equals("acdb")) {
+                    // Only the actions handled here are parsed in full, pages are rendered by handleIntercept.
+                    switch (ActiveCaptainDatabase.parseAcdbUrlActionType(uri.toString())) {
+                        case EDIT:
+                            // Fallthrough is intentional.
+                        case REPORT_REVIEW: {
+                            AcdbUrlAction action = ActiveCaptainManager.getInstance().getDatabase().parseAcdbUrlUtf8(uri.toString(), ActiveCaptainManager.getInstance().getCaptainName(), ActiveCaptainConfiguration.REVIEW_LIST_PAGE_SIZE);
+                            String jwt = ActiveCaptainManager.getInstance().getJwt();
+                            if (action != null && jwt != null && !jwt.isEmpty()) {
+                                Intent intent = new Intent(getApplicationContext(), WebViewActivity.class);
+                                intent.putExtra(WebViewActivity.WEBVIEW_URL, action.content);
+                                intent.putExtra(WebViewActivity.JWT, jwt);
+                                startActivityForResult(intent, LaunchActivity.WEBVIEW_ACTIVITY.getValue());
+
+                                return true;
                             }
-                            default:
-                                break;
+                            break;
                         }
+                        default:
+                            break;
                     }
                 }
 
@@ -141,27 +141,30 @@ public class MainActivity extends AppCompatActivity {
                 WebResourceResponse response = null;
 
                 if (uri.getScheme().equals("acdb")) {
-                    AcdbUrlAction action = ActiveCaptainManager.getInstance().getDatabase().parseAcdbUrl(uri.toString(), ActiveCaptainManager.getInstance().getCaptainName(), ActiveCaptainConfiguration.REVIEW_LIST_PAGE_SIZE);
-                    if (action != null) {
-                        switch (action.action) {
-                            case SHOW_SUMMARY:
-                                ActiveCaptainManager.getInstance().reportMarkerViewed(markerId);
-                                // Fallthrough is intentional.
-                            case SEE_ALL:
-                                // Fallthrough is intentional.
-                            case SHOW_PHOTOS: {
-                                InputStream inputStream = new ByteArrayInputStream(action.content.getBytes(StandardCharsets.UTF_8));
+                    switch (ActiveCaptainDatabase.parseAcdbUrlActionType(uri.toString())) {
+                        case SHOW_SUMMARY:
+                            ActiveCaptainManager.getInstance().reportMarkerViewed(markerId);
+                            // Fallthrough is intentional.
+                        case SEE_ALL:
+                            // Fallthrough is intentional.
+                        case SHOW_PHOTOS: {
+                            AcdbUrlAction action = ActiveCaptainManager.getInstance().getDatabase().parseAcdbUrlUtf8(uri.toString(), ActiveCaptainManager.getInstance().getCaptainName(), ActiveCaptainConfiguration.REVIEW_LIST_PAGE_SIZE);
+                            if (action != null) {
+                                InputStream inputStream = new ByteArrayInputStream(action.contentBytes);
                                 response = new WebResourceResponse("text/html", "utf-8", inputStream);
-                                break;
                             }
-                            case VOTE_REVIEW: {
+                            break;
+                        }
+                        case VOTE_REVIEW: {
+                            AcdbUrlAction action = ActiveCaptainManager.getInstance().getDatabase().parseAcdbUrlUtf8(uri.toString(), ActiveCaptainManager.getInstance().getCaptainName(), ActiveCaptainConfiguration.REVIEW_LIST_PAGE_SIZE);
+                            if (action != null) {
                                 ActiveCaptainManager.getInstance().voteForReview(Long.parseLong(action.content));
                                 reloadContent();
-                                break;
                             }
-                            default:
-                                break;
+                            break;
                         }
+                        default:
+                            break;
                     }
                 } else if (uri.toString().startsWith(IMAGE_ASSETS_BASE_URL)) {
                     response = assetLoader.shouldInterceptRequest(uri);
@@ -179,9 +182,8 @@ public class MainActivity extends AppCompatActivity {
         boundingBoxes.add(new BoundingBox(17.0, -171.0, 72.0, -64.0));
         ActiveCaptainManager.getInstance().setBoundingBoxes(boundingBoxes);
 
-        ExecutorService executor = Executors.newSingleThreadExecutor();
         Handler handler = new Handler(Looper.getMainLooper());
-        executor.execute(() -> {
+        startupExecutor.execute(() -> {
             if (intent.hasExtra(LoginActivity.SERVICE_URL) && intent.hasExtra(LoginActivity.SERVICE_TICKET)) {
                 String serviceUrl = intent.getStringExtra(LoginActivity.SERVICE_URL);
                 String serviceTicket = intent.getStringExtra(LoginActivity.SERVICE_TICKET);
@@ -195,6 +197,18 @@ public class MainActivity extends AppCompatActivity {
 
             handler.post(this::reloadContent);
         });
+        startupExecutor.shutdown();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        // Only when leaving the app, not when the activity is recreated for a configuration change.
+        if (isFinishing()) {
+            startupExecutor.shutdownNow();
+            ActiveCaptainManager.shutdown();
+        }
     }
 
     @Override
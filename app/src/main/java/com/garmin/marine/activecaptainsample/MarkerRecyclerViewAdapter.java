@@ -16,6 +16,7 @@ limitations under the License.
 
 package com.garmin.marine.activecaptainsample;
 
+import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.view.LayoutInflater;
@@ -28,15 +29,14 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.garmin.marine.activecaptaincommunitysdk.DTO.MapIconType;
 import com.garmin.marine.activecaptaincommunitysdk.DTO.SearchMarker;
+import com.garmin.marine.activecaptaincommunitysdk.DTO.SearchResultBuffer;
 
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class MarkerRecyclerViewAdapter extends RecyclerView.Adapter<MarkerRecyclerViewAdapter.ViewHolder> {
@@ -63,30 +63,40 @@ public class MarkerRecyclerViewAdapter extends RecyclerView.Adapter<MarkerRecycl
         private final ImageView imageView;
         private final TextView textView;
 
+        private SearchResultBuffer searchResults;
+        private int position;
+        private ItemClickListener<SearchMarker> listener;
+
         public ViewHolder(View view) {
             super(view);
 
             imageView = (ImageView) view.findViewById(R.id.markerIcon);
             textView = (TextView) view.findViewById(R.id.markerName);
-        }
 
-        public void bind(final SearchMarker searchMarker, final ItemClickListener<SearchMarker> listener) {
-            try {
-                InputStream inputStream = imageView.getContext().getAssets().open(ICON_BASE_PATH + ICON_FILENAMES.get(searchMarker.getMapIcon()));
-                Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
-                imageView.setImageBitmap(bitmap);
-            } catch (IOException ignored) {
-            }
+            // The SearchMarker is only created when the row is clicked.
+            itemView.setOnClickListener(v -> {
+                if (listener != null) {
+                    listener.onItemClicked(searchResults.toSearchMarker(position));
+                }
+            });
+        }
 
-            textView.setText(searchMarker.getName());
+        public void bind(final SearchResultBuffer searchResults, final int position, final Bitmap icon, final ItemClickListener<SearchMarker> listener) {
+            this.searchResults = searchResults;
+            this.position = position;
+            this.listener = listener;
 
-            itemView.setOnClickListener(v -> listener.onItemClicked(searchMarker));
+            imageView.setImageBitmap(icon);
+            textView.setText(searchResults.getName(position));
         }
     }
 
-    private final List<SearchMarker> mSearchMarkers = new ArrayList<>();
+    private SearchResultBuffer mSearchResults = new SearchResultBuffer();
     private final ItemClickListener<SearchMarker> mClickListener;
 
+    // Icons are decoded once per map icon type, rows of the same type share the bitmap.
+    private final Map<MapIconType, Bitmap> mIcons = new EnumMap<>(MapIconType.class);
+
     public MarkerRecyclerViewAdapter(ItemClickListener<SearchMarker> clickListener) {
         this.mClickListener = clickListener;
     }
@@ -99,23 +109,41 @@ public class MarkerRecyclerViewAdapter extends RecyclerView.Adapter<MarkerRecycl
 
     @Override
     public void onBindViewHolder(ViewHolder viewHolder, final int position) {
-        viewHolder.bind(getItem(position), mClickListener);
+        viewHolder.bind(mSearchResults, position, getIcon(viewHolder.itemView.getContext(), mSearchResults.getMapIcon(position)), mClickListener);
+    }
+
+    private Bitmap getIcon(Context context, MapIconType mapIcon) {
+        if (!mIcons.containsKey(mapIcon)) {
+            Bitmap bitmap = null;
+            try (InputStream inputStream = context.getAssets().open(ICON_BASE_PATH + ICON_FILENAMES.get(mapIcon))) {
+                bitmap = BitmapFactory.decodeStream(inputStream);
+            } catch (IOException ignored) {
+            }
+
+            mIcons.put(mapIcon, bitmap);
+        }
+
+        return mIcons.get(mapIcon);
     }
 
     public SearchMarker getItem(int position) {
-        return mSearchMarkers.get(position);
+        return mSearchResults.toSearchMarker(position);
     }
 
     @Override
     public int getItemCount() {
-        return mSearchMarkers.size();
+        return mSearchResults.count;
     }
 
-    public void updateSearchMarkers(SearchMarker[] markers) {
-        mSearchMarkers.clear();
-        if (markers != null && markers.length > 0) {
-            mSearchMarkers.addAll(Arrays.asList(markers));
-        }
+    /**
+     * Show new search results.
+     * @return buffer holding the previously shown results, no longer used by the adapter
+     */
+    public SearchResultBuffer updateSearchMarkers(SearchResultBuffer searchResults) {
+        SearchResultBuffer previousResults = mSearchResults;
+        mSearchResults = searchResults;
         notifyDataSetChanged();
+
+        return previousResults;
     }
 }
@@ -19,19 +19,34 @@ package com.garmin.marine.activecaptainsample;
 import android.app.Activity;
 import android.content.Intent;
 import android.os.Bundle;
+import android.util.Log;
 import android.widget.SearchView;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.DividerItemDecoration;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.garmin.marine.activecaptaincommunitysdk.ResultCallback;
 import com.garmin.marine.activecaptaincommunitysdk.DTO.SearchMarker;
+import com.garmin.marine.activecaptaincommunitysdk.DTO.SearchResultBuffer;
+
+import java.util.concurrent.Future;
 
 public class SearchActivity extends AppCompatActivity implements ItemClickListener<SearchMarker> {
     public static final String MARKER_ID = "com.garmin.marine.activecaptainsample.MARKER_ID";
 
     private SearchView searchView;
     private MarkerRecyclerViewAdapter markerRecyclerViewAdapter;
+    private Future<SearchResultBuffer> pendingSearch;
+
+    // Query typed while a search was running, started when that search finishes.  Only one search
+    // runs at a time, so its buffer comes back for reuse unless the search is cancelled.
+    private String queuedQuery;
+
+    // Buffer previously shown by the adapter, or filled by a superseded search, reused by the
+    // next search.  A buffer belongs to at most one search at a time, so a running search never
+    // writes into a buffer that is being displayed.
+    private SearchResultBuffer spareSearchResults;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -50,8 +65,7 @@ public class SearchActivity extends AppCompatActivity implements ItemClickListen
             public boolean onQueryTextChange(String query) {
                 if (query.length() >= ActiveCaptainConfiguration.MARKER_MIN_SEARCH_LENGTH)
                 {
-                    SearchMarker[] searchMarkers = ActiveCaptainManager.getInstance().getDatabase().getSearchMarkers(query, -90, -180, 90, 180, ActiveCaptainConfiguration.MARKER_MAX_SEARCH_RESULTS, false);
-                    markerRecyclerViewAdapter.updateSearchMarkers(searchMarkers);
+                    search(query);
                 }
 
                 return true;
@@ -64,6 +78,16 @@ public class SearchActivity extends AppCompatActivity implements ItemClickListen
         recyclerView.setAdapter(markerRecyclerViewAdapter);
     }
 
+    @Override
+    protected void onDestroy() {
+        if (pendingSearch != null) {
+            pendingSearch.cancel(false);
+            pendingSearch = null;
+        }
+
+        super.onDestroy();
+    }
+
     @Override
     public void onItemClicked(SearchMarker searchMarker) {
         Intent intent = getIntent();
@@ -71,4 +95,66 @@ public class SearchActivity extends AppCompatActivity implements ItemClickListen
         setResult(Activity.RESULT_OK, intent);
         finish();
     }
+
+    private void search(String query) {
+        // A cancelled search never reports back, and may still be writing into its buffer, so it
+        // is forgotten along with the buffer.
+        if (pendingSearch != null && pendingSearch.isCancelled()) {
+            pendingSearch = null;
+        }
+
+        if (pendingSearch != null) {
+            queuedQuery = query;
+            return;
+        }
+
+        final SearchResultBuffer results = spareSearchResults != null ? spareSearchResults : new SearchResultBuffer(ActiveCaptainConfiguration.MARKER_MAX_SEARCH_RESULTS);
+        spareSearchResults = null;
+
+        pendingSearch = ActiveCaptainManager.getInstance().getDatabase().getSearchMarkersAsync(query, -90, -180, 90, 180, ActiveCaptainConfiguration.MARKER_MAX_SEARCH_RESULTS, false, results, new ResultCallback<SearchResultBuffer>() {
+            @Override
+            public void onResult(SearchResultBuffer result) {
+                runOnUiThread(() -> onSearchFinished(results, true));
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                Log.e("SearchActivity", "Search failed: " + error.getMessage());
+                runOnUiThread(() -> onSearchFinished(results, false));
+            }
+        });
+    }
+
+    private void onSearchFinished(SearchResultBuffer results, boolean succeeded) {
+        pendingSearch = null;
+
+        if (isDestroyed()) {
+            return;
+        }
+
+        String query = queuedQuery;
+        queuedQuery = null;
+
+        if (query != null) {
+            // Superseded while running, the results are stale and the buffer is reused.
+            spareSearchResults = results;
+            search(query);
+        } else if (succeeded) {
+            showSearchResults(results);
+        } else {
+            spareSearchResults = results;
+        }
+    }
+
+    private void showSearchResults(SearchResultBuffer results) {
+        spareSearchResults = markerRecyclerViewAdapter.updateSearchMarkers(results);
+
+        // The user usually opens one of the first few results.
+        long[] prefetchIds = new long[Math.min(results.count, ActiveCaptainConfiguration.MARKER_PREFETCH_COUNT)];
+        for (int i = 0; i < prefetchIds.length; i++) {
+            prefetchIds[i] = results.getId(i);
+        }
+
+        ActiveCaptainManager.getInstance().getDatabase().prefetchSummaries(prefetchIds, ActiveCaptainManager.getInstance().getCaptainName(), ActiveCaptainConfiguration.REVIEW_LIST_PAGE_SIZE);
+    }
 }
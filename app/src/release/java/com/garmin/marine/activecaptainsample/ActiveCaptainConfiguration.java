@@ -23,6 +23,10 @@ public class ActiveCaptainConfiguration {
     static final int MARKER_MIN_SEARCH_LENGTH = 3;
     static final int MARKER_MAX_SEARCH_RESULTS = 100;
     static final int REVIEW_LIST_PAGE_SIZE = 10;
+    static final int MARKER_PREFETCH_COUNT = 3;  // number of search results rendered ahead of being opened
+    static final int DATABASE_READ_CONNECTIONS = 2;
+    static final int SYNC_PARALLELISM = 4;  // number of tiles synced at the same time
+    static final int EXPORT_DOWNLOAD_PARALLELISM = 4;  // number of tile exports downloaded at the same time
     static final int UPDATE_INTERVAL_MINS = 15;  // in minutes, must be >= 15
     static final String WEBVIEW_BASE_URL = "https://activecaptain.garmin.com";
     static final boolean WEBVIEW_DEBUG = false;
@@ -0,0 +1,42 @@
+/*------------------------------------------------------------------------------
+Copyright 2021 Garmin Ltd. or its subsidiaries.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+------------------------------------------------------------------------------*/
+
+
+package com.garmin.marine.activecaptainsample;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExportDownloaderTest {
+    @Test
+    public void contentRangeStartParsesFirstBytePosition() {
+        assertEquals(0, ExportDownloader.contentRangeStart("bytes 0-1023/4096"));
+        assertEquals(1024, ExportDownloader.contentRangeStart("bytes 1024-4095/4096"));
+        assertEquals(1024, ExportDownloader.contentRangeStart("bytes 1024-4095/*"));
+        assertEquals(5000000000L, ExportDownloader.contentRangeStart("bytes 5000000000-5000000999/5000001000"));
+    }
+
+    @Test
+    public void contentRangeStartRejectsMalformedHeaders() {
+        assertEquals(-1, ExportDownloader.contentRangeStart(null));
+        assertEquals(-1, ExportDownloader.contentRangeStart(""));
+        assertEquals(-1, ExportDownloader.contentRangeStart("items 0-10/20"));
+        assertEquals(-1, ExportDownloader.contentRangeStart("bytes */4096"));
+        assertEquals(-1, ExportDownloader.contentRangeStart("bytes abc-10/20"));
+        assertEquals(-1, ExportDownloader.contentRangeStart("bytes 100"));
+    }
+}